@@ -16,9 +16,11 @@ import utils.EventUtils;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static models.Player.Bot.MAX_BOT_LEVEL;
 import static utils.LogUtils.LOGGER;
@@ -60,9 +62,9 @@ public class AgentHandler {
             .queue(hook -> {
                 LOGGER.info("Starting board state analysis");
 
+                var future = agentDispatcher.findMoves(game.getKey(), game.getBoard(), depth);
                 try {
-                    var future = agentDispatcher.findMoves(game.getBoard(), depth);
-                    var rankedMoves = future.get();
+                    var rankedMoves = future.get(GameHandler.BOT_MOVE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
 
                     var image = BoardRenderer.drawBoardAnalysis(game.getBoard(), rankedMoves);
                     var view = GameView.createAnalysisView(game, image, finalLevel, player);
@@ -71,6 +73,11 @@ public class AgentHandler {
                     LOGGER.info("Finished board state analysis");
                 } catch (ExecutionException | InterruptedException e) {
                     LOGGER.warn("Error occurred while responding to an analyze command", e);
+                } catch (TimeoutException e) {
+                    LOGGER.warn("Timed out while responding to an analyze command", e);
+                    future.cancel(true);
+                } catch (CancellationException e) {
+                    LOGGER.info("Board state analysis for game {} was cancelled", game.getKey());
                 }
             });
     }
@@ -85,7 +92,7 @@ public class AgentHandler {
             while (!finished) {
                 try {
                     var board = game.getBoard();
-                    var future = state.getAgentDispatcher().findMove(board, depth);
+                    var future = state.getAgentDispatcher().findMove(id, board, depth);
                     var bestMove = future.get();
 
                     var nextGame = Game.from(game);
@@ -107,24 +114,32 @@ public class AgentHandler {
                     }
                 } catch (InterruptedException | ExecutionException x) {
                     LOGGER.error("Failed to put a task on the game view queue", x);
+                    // retrying would fail the same way, so the simulation ends and the wait loop is told to stop
+                    queue.offer(Optional.empty());
+                    finished = true;
+                } catch (CancellationException x) {
+                    LOGGER.info("Cancelled the game simulation: {}", id);
+                    finished = true;
                 }
             }
         });
     }
 
-    private void simulationWaitLoop(BlockingQueue<Optional<GameView>> queue, long delay, InteractionHook hook) {
+    private void simulationWaitLoop(BlockingQueue<Optional<GameView>> queue, long delay, InteractionHook hook, String id) {
         Runnable scheduled = () -> {
             try {
                 var optView = queue.take();
                 if (optView.isPresent()) {
                     // each completion callback will recursively schedule the next action
                     optView.get().editUsingHook(hook);
-                    simulationWaitLoop(queue, delay, hook);
+                    simulationWaitLoop(queue, delay, hook, id);
                 } else {
                     LOGGER.info("Finished game simulation wait loop");
                 }
             } catch (Exception ex) {
+                // nobody will see the rest of the simulation, so the search for it is cancelled
                 LOGGER.error("Error occurred in scheduled event", ex);
+                state.getAgentDispatcher().cancel(id);
             }
         };
         // wait at least 1 second before we process each element to avoid overloading a Discord text channel
@@ -164,7 +179,7 @@ public class AgentHandler {
         EventUtils.replyView(event, startView, (hook) -> {
             BlockingQueue<Optional<GameView>> queue = new LinkedBlockingQueue<>();
             simulationGameLoop(startGame, queue, id);
-            simulationWaitLoop(queue, finalDelay, hook);
+            simulationWaitLoop(queue, finalDelay, hook, id);
         });
     }
 }
@@ -5,6 +5,7 @@
 package discord;
 
 import engine.OthelloBoard;
+import engine.Tile;
 import lombok.AllArgsConstructor;
 import models.Player;
 import net.dv8tion.jda.api.interactions.commands.Command;
@@ -24,20 +25,10 @@ public class AutoCompleteHandler {
 
         var game = gameService.getGame(player);
         if (game != null) {
-            var moves = game.findPotentialMoves();
-
-            // don't display duplicate moves
-            var duplicate = new boolean[OthelloBoard.getBoardSize()][OthelloBoard.getBoardSize()];
-
             List<Command.Choice> choices = new ArrayList<>();
-            for (var tile : moves) {
-                var row = tile.row();
-                var col = tile.col();
-
-                if (!duplicate[row][col]) {
-                    choices.add(new Command.Choice(tile.toString(), tile.toString()));
-                }
-                duplicate[row][col] = true;
+            for (var moves = game.findLegalMoves(); moves != 0; moves = OthelloBoard.removeFirstMove(moves)) {
+                var tile = Tile.fromSquare(OthelloBoard.firstMove(moves));
+                choices.add(new Command.Choice(tile.toString(), tile.toString()));
             }
 
             interaction.replyChoices(choices).queue();
@@ -43,9 +43,11 @@ public class BotState {
         taskExecutor = Executors.newCachedThreadPool(createThreadFactory("Task-Pool"));
         scheduler = Executors.newScheduledThreadPool(1, createThreadFactory("Schedule-Pool"));
         userFetcher = UserFetcher.usingDiscord(jda);
-        agentDispatcher = new AgentDispatcher(cpuBndExecutor);
+        var helperExecutor = Executors.newCachedThreadPool(createThreadFactory("Helper-Pool"));
+        var ponderExecutor = Executors.newCachedThreadPool(createThreadFactory("Ponder-Pool"));
+        agentDispatcher = new AgentDispatcher(cpuBndExecutor, helperExecutor, ponderExecutor, CORES);
         statsService = new StatsService(statsDao, userFetcher);
-        gameService = new GameService(statsService);
+        gameService = new GameService(statsService, agentDispatcher);
         challengeScheduler = new ChallengeScheduler();
     }
 }
@@ -14,12 +14,19 @@ import services.GameService;
 import utils.EventUtils;
 
 import java.util.Objects;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static utils.LogUtils.LOGGER;
 
 @AllArgsConstructor
 public class GameHandler {
+    // the longest we wait for the bot to move, past this the search is cancelled so the agent is freed
+    public static final long BOT_MOVE_TIMEOUT_SECONDS = 30;
+
     private BotState state;
 
     public void handleView(SlashCommandInteraction event) {
@@ -54,13 +61,19 @@ public class GameHandler {
         var currPlayer = game.getCurrentPlayer();
         var depth = Player.Bot.getDepthFromId(currPlayer.id);
 
+        Future<Tile.Move> future = null;
         try {
             // queue an agent request which will find the best move, make the move, and send back a response
-            var future = state.getAgentDispatcher().findMove(game.getBoard(), depth);
-            var bestMove = future.get();
+            future = state.getAgentDispatcher().findMove(game.getKey(), game.getBoard(), depth);
+            var bestMove = future.get(BOT_MOVE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
 
             var newGame = state.getGameService().makeMove(currPlayer, bestMove.tile());
 
+            // the bot thinks about its next move while the player thinks about theirs
+            if (!newGame.isOver() && !newGame.getCurrentPlayer().isBot()) {
+                state.getAgentDispatcher().ponder(newGame.getKey(), newGame.getBoard(), depth);
+            }
+
             var view = newGame.isOver() ?
                 handleGameOver(newGame, bestMove.tile()) :
                 GameView.createGameMoveView(game, bestMove.tile(), BoardRenderer.drawBoardMoves(game.getBoard()));
@@ -68,6 +81,12 @@ public class GameHandler {
             EventUtils.sendView(event, view);
         } catch (InterruptedException | ExecutionException e) {
             LOGGER.error("Error occurred while waiting for a bot response ", e);
+        } catch (TimeoutException e) {
+            LOGGER.error("Timed out while waiting for a bot response", e);
+            future.cancel(true);
+        } catch (CancellationException e) {
+            // the game was deleted or expired while the bot was thinking
+            LOGGER.info("Bot move for game {} was cancelled", game.getKey());
         } catch (GameService.TurnException | GameService.NotPlayingException | GameService.InvalidMoveException e) {
             // this shouldn't happen: the bot should only make legal moves when it is currently it's turn
             // if we get an error like this, the only thing we can do is log it and debug later
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package engine;
+
+import java.util.Random;
+
+import static utils.LogUtils.LOGGER;
+
+// processes many independent boards at once, boards are stored as parallel arrays of masks from the point of view
+// of the side to move, so own[i] and opponent[i] are the discs of the player to move and their opponent on board i
+public interface BatchKernel {
+
+    String VECTOR_MODULE = "jdk.incubator.vector";
+
+    // finds the legal move mask of each board
+    void findLegalMoves(long[] own, long[] opponent, long[] moves, int count);
+
+    // makes the move given as a single bit mask on each board, updating the masks in place and storing the flips,
+    // boards with an empty move mask are left unchanged
+    void makeMoves(long[] own, long[] opponent, long[] moveBits, long[] flips, int count);
+
+    // counts the discs in each mask
+    void countDiscs(long[] discs, int[] counts, int count);
+
+    // uses the vector kernel when the jvm was started with --add-modules jdk.incubator.vector, or the scalar kernel otherwise
+    static BatchKernel create() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+            try {
+                return new VectorBatchKernel();
+            } catch (LinkageError ex) {
+                LOGGER.warn("Failed to load the vector batch kernel, falling back to scalar", ex);
+            }
+        }
+        return new ScalarBatchKernel();
+    }
+
+    // usage: BatchKernel [positions] [rounds], run with --add-modules jdk.incubator.vector to include the vector kernel
+    static void main(String[] args) {
+        var positions = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 20;
+        var rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        // collect positions from random games so the boards have realistic disc layouts
+        var random = new Random(0);
+        var own = new long[positions];
+        var opponent = new long[positions];
+        var board = OthelloBoard.initial();
+        for (var i = 0; i < positions; i++) {
+            var moves = board.findLegalMoves();
+            if (moves == 0) {
+                board = OthelloBoard.initial();
+                moves = board.findLegalMoves();
+            }
+            var color = board.isBlackMove() ? OthelloBoard.BLACK : OthelloBoard.WHITE;
+            own[i] = board.getDiscs(color);
+            opponent[i] = board.getDiscs(color == OthelloBoard.BLACK ? OthelloBoard.WHITE : OthelloBoard.BLACK);
+
+            board.makeMove(OthelloBoard.randomMove(random, moves));
+            if (board.findLegalMoves() == 0) {
+                board.skipTurn();
+            }
+        }
+
+        var kernels = create() instanceof VectorBatchKernel ?
+            new BatchKernel[]{new ScalarBatchKernel(), new VectorBatchKernel()} :
+            new BatchKernel[]{new ScalarBatchKernel()};
+        for (var kernel : kernels) {
+            var ownCopy = new long[positions];
+            var opponentCopy = new long[positions];
+            var moves = new long[positions];
+            var moveBits = new long[positions];
+            var flips = new long[positions];
+            var counts = new int[positions];
+
+            // the first half of the rounds warm up the jit and are not timed
+            var startTime = 0L;
+            for (var round = -rounds; round < rounds; round++) {
+                if (round == 0) {
+                    startTime = System.nanoTime();
+                }
+                System.arraycopy(own, 0, ownCopy, 0, positions);
+                System.arraycopy(opponent, 0, opponentCopy, 0, positions);
+                kernel.findLegalMoves(ownCopy, opponentCopy, moves, positions);
+                for (var i = 0; i < positions; i++) {
+                    moveBits[i] = moves[i] & -moves[i];
+                }
+                kernel.makeMoves(ownCopy, opponentCopy, moveBits, flips, positions);
+                kernel.countDiscs(ownCopy, counts, positions);
+            }
+            var timeTaken = System.nanoTime() - startTime;
+
+            System.out.printf("%s: positions: %d, rounds: %d, time_taken: %dms, positions_per_sec: %.0f%n",
+                kernel.getClass().getSimpleName(), positions, rounds, timeTaken / 1_000_000,
+                (double) positions * rounds * 1e9 / timeTaken);
+        }
+    }
+}
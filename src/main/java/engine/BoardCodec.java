@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package engine;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+// binary and text formats for a board, both hold the black discs, the white discs and the side to move
+//
+// binary: the black mask and the white mask as big-endian longs followed by a byte that is 1 when black is to move
+// text: 64 square characters from a1 to h8 in row order ('X' black, 'O' white, '-' empty), a space and the side to move
+// e.g. the initial board is "---------------------------OX------XO--------------------------- X"
+public final class BoardCodec {
+
+    public static final int BINARY_SIZE = 2 * Long.BYTES + 1;
+    public static final int TEXT_SIZE = 64 + 2;
+    private static final char BLACK_CHAR = 'X';
+    private static final char WHITE_CHAR = 'O';
+    private static final char EMPTY_CHAR = '-';
+
+    private BoardCodec() {
+    }
+
+    public static void write(OthelloBoard board, ByteBuffer buffer) {
+        buffer.putLong(board.getDiscs(OthelloBoard.BLACK));
+        buffer.putLong(board.getDiscs(OthelloBoard.WHITE));
+        buffer.put((byte) (board.isBlackMove() ? 1 : 0));
+    }
+
+    public static OthelloBoard read(ByteBuffer buffer) {
+        var blackDiscs = buffer.getLong();
+        var whiteDiscs = buffer.getLong();
+        var blackMove = buffer.get() != 0;
+        return OthelloBoard.of(blackDiscs, whiteDiscs, blackMove);
+    }
+
+    public static void write(OthelloBoard board, DataOutput output) throws IOException {
+        output.writeLong(board.getDiscs(OthelloBoard.BLACK));
+        output.writeLong(board.getDiscs(OthelloBoard.WHITE));
+        output.writeByte(board.isBlackMove() ? 1 : 0);
+    }
+
+    public static OthelloBoard read(DataInput input) throws IOException {
+        var blackDiscs = input.readLong();
+        var whiteDiscs = input.readLong();
+        var blackMove = input.readByte() != 0;
+        return OthelloBoard.of(blackDiscs, whiteDiscs, blackMove);
+    }
+
+    private static char toChar(OthelloBoard board, int square) {
+        return switch (board.getSquare(square)) {
+            case OthelloBoard.BLACK -> BLACK_CHAR;
+            case OthelloBoard.WHITE -> WHITE_CHAR;
+            default -> EMPTY_CHAR;
+        };
+    }
+
+    // writes the text notation as ascii bytes
+    public static void writeText(OthelloBoard board, ByteBuffer buffer) {
+        for (var square = 0; square < 64; square++) {
+            buffer.put((byte) toChar(board, square));
+        }
+        buffer.put((byte) ' ');
+        buffer.put((byte) (board.isBlackMove() ? BLACK_CHAR : WHITE_CHAR));
+    }
+
+    public static void writeText(OthelloBoard board, StringBuilder builder) {
+        for (var square = 0; square < 64; square++) {
+            builder.append(toChar(board, square));
+        }
+        builder.append(' ');
+        builder.append(board.isBlackMove() ? BLACK_CHAR : WHITE_CHAR);
+    }
+
+    public static String toText(OthelloBoard board) {
+        var builder = new StringBuilder(TEXT_SIZE);
+        writeText(board, builder);
+        return builder.toString();
+    }
+
+    private static boolean parseSide(char c) {
+        return switch (c) {
+            case BLACK_CHAR -> true;
+            case WHITE_CHAR -> false;
+            default -> throw new IllegalArgumentException("Invalid side to move: " + c);
+        };
+    }
+
+    // reads the text notation from ascii bytes
+    public static OthelloBoard readText(ByteBuffer buffer) {
+        var blackDiscs = 0L;
+        var whiteDiscs = 0L;
+        for (var square = 0; square < 64; square++) {
+            var c = (char) buffer.get();
+            if (c == BLACK_CHAR) {
+                blackDiscs |= 1L << square;
+            } else if (c == WHITE_CHAR) {
+                whiteDiscs |= 1L << square;
+            } else if (c != EMPTY_CHAR) {
+                throw new IllegalArgumentException("Invalid square character: " + c);
+            }
+        }
+        if (buffer.get() != ' ') {
+            throw new IllegalArgumentException("Expected a space before the side to move");
+        }
+        return OthelloBoard.of(blackDiscs, whiteDiscs, parseSide((char) buffer.get()));
+    }
+
+    public static OthelloBoard fromText(CharSequence text) {
+        if (text.length() != TEXT_SIZE || text.charAt(64) != ' ') {
+            throw new IllegalArgumentException("Board text must be 64 squares, a space and the side to move");
+        }
+        var blackDiscs = 0L;
+        var whiteDiscs = 0L;
+        for (var square = 0; square < 64; square++) {
+            var c = text.charAt(square);
+            if (c == BLACK_CHAR) {
+                blackDiscs |= 1L << square;
+            } else if (c == WHITE_CHAR) {
+                whiteDiscs |= 1L << square;
+            } else if (c != EMPTY_CHAR) {
+                throw new IllegalArgumentException("Invalid square character: " + c);
+            }
+        }
+        return OthelloBoard.of(blackDiscs, whiteDiscs, parseSide(text.charAt(65)));
+    }
+}
@@ -0,0 +1,359 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package engine;
+
+import lombok.Getter;
+
+import java.util.Random;
+
+// solves the last empties of a game exactly, the score of a position is the final disc difference for the side to
+// move with perfect play from both sides, it is searched as negamax on the two disc masks of the side to move
+// and its opponent, with specialised routines for the last 3 empties that do not generate moves
+public final class EndgameSolver {
+
+    public static final int DEFAULT_MAX_EMPTIES = 16;
+    // returned when the deadline passes or the thread is interrupted before the position is solved
+    public static final int NOT_SOLVED = Integer.MIN_VALUE;
+
+    private static final int MAX_SCORE = 64;
+    // positions with fewer empties than these are not worth hashing or ordering by mobility
+    private static final int HASH_MIN_EMPTIES = 7;
+    private static final int FASTEST_FIRST_MIN_EMPTIES = 7;
+    private static final int HASH_BITS = 16;
+    private static final int STOP_CHECK_MASK = (1 << 12) - 1;
+
+    // the quadrants of the board, a move into a quadrant with an odd number of empties is tried first, as the
+    // player who moves last in a region tends to keep the discs there
+    private static final long[] QUADRANTS = {
+        0x000000000F0F0F0FL, 0x00000000F0F0F0F0L, 0x0F0F0F0F00000000L, 0xF0F0F0F000000000L
+    };
+
+    // the hash table stores both disc masks so the positions are verified exactly, and the score bounds never go
+    // stale as the scores are exact, so the table is kept for the life of the solver
+    private final long[] hashOwn = new long[1 << HASH_BITS];
+    private final long[] hashOpponent = new long[1 << HASH_BITS];
+    private final int[] hashData = new int[1 << HASH_BITS];
+
+    // move buffers by number of empties, there is one node per number of empties on the path being searched
+    private final int[][] moveBuffers = new int[65][64];
+    private final int[][] scoreBuffers = new int[65][64];
+
+    private long deadline = Long.MAX_VALUE;
+    private boolean stopped = false;
+    private int stopChecks = 0;
+    @Getter
+    private long nodesVisited = 0;
+
+    // solves the board and returns the final disc difference for black, or NOT_SOLVED if the deadline passed
+    public int solve(OthelloBoard board, long deadline) {
+        return solve(board, -MAX_SCORE, MAX_SCORE, deadline);
+    }
+
+    // solves the board in a window of black's disc difference, a score outside the window is only a bound
+    public int solve(OthelloBoard board, int alpha, int beta, long deadline) {
+        this.deadline = deadline;
+        stopped = false;
+        nodesVisited = 0;
+
+        var black = board.getDiscs(OthelloBoard.BLACK);
+        var white = board.getDiscs(OthelloBoard.WHITE);
+        int score;
+        if (board.isBlackMove()) {
+            score = search(black, white, alpha, beta);
+        } else {
+            score = -search(white, black, -beta, -alpha);
+        }
+        return stopped ? NOT_SOLVED : score;
+    }
+
+    private boolean checkStopped() {
+        if (!stopped && (++stopChecks & STOP_CHECK_MASK) == 0) {
+            stopped = System.currentTimeMillis() > deadline || Thread.currentThread().isInterrupted();
+        }
+        return stopped;
+    }
+
+    private static int findFinalScore(long own, long opponent) {
+        return Long.bitCount(own) - Long.bitCount(opponent);
+    }
+
+    private static int findQuadrant(int square) {
+        return ((square >> 4) & 2) | ((square >> 2) & 1);
+    }
+
+    // the quadrants with an odd number of empties as a mask of 4 bits
+    private static int findParity(long empty) {
+        var parity = 0;
+        for (var q = 0; q < QUADRANTS.length; q++) {
+            parity |= (Long.bitCount(empty & QUADRANTS[q]) & 1) << q;
+        }
+        return parity;
+    }
+
+    private int search(long own, long opponent, int alpha, int beta) {
+        nodesVisited++;
+        if (checkStopped()) {
+            return 0;
+        }
+
+        var empty = ~(own | opponent);
+        var empties = Long.bitCount(empty);
+        switch (empties) {
+            case 0:
+                return findFinalScore(own, opponent);
+            case 1:
+                return solve1(own, opponent, Long.numberOfTrailingZeros(empty));
+            case 2: {
+                var sq1 = Long.numberOfTrailingZeros(empty);
+                var sq2 = Long.numberOfTrailingZeros(empty & (empty - 1));
+                return solve2(own, opponent, alpha, beta, sq1, sq2, false);
+            }
+            case 3: {
+                var sq1 = Long.numberOfTrailingZeros(empty);
+                empty &= empty - 1;
+                var sq2 = Long.numberOfTrailingZeros(empty);
+                var sq3 = Long.numberOfTrailingZeros(empty & (empty - 1));
+                return solve3(own, opponent, alpha, beta, sq1, sq2, sq3);
+            }
+            default:
+                return searchMoves(own, opponent, alpha, beta, empties);
+        }
+    }
+
+    private int searchMoves(long own, long opponent, int alpha, int beta, int empties) {
+        var moves = OthelloBoard.findLegalMoves(own, opponent);
+        if (moves == 0) {
+            if (OthelloBoard.findLegalMoves(opponent, own) == 0) {
+                return findFinalScore(own, opponent);
+            }
+            return -search(opponent, own, -beta, -alpha);
+        }
+
+        // the opponent keeps its stable discs to the end, which caps the score, they are only worth finding when
+        // the cap would be at or below alpha if all of the opponent's discs were stable
+        if (MAX_SCORE - 2 * Long.bitCount(opponent) <= alpha) {
+            var upper = MAX_SCORE - 2 * Long.bitCount(Stability.findStable(opponent, own));
+            if (upper <= alpha) {
+                return upper;
+            }
+        }
+
+        // narrow the window with the stored bounds, and return when they already decide the score
+        var hashed = empties >= HASH_MIN_EMPTIES;
+        var index = hashed ? findIndex(own, opponent) : 0;
+        var hashMove = -1;
+        if (hashed && hashOwn[index] == own && hashOpponent[index] == opponent && hashData[index] != 0) {
+            var data = hashData[index];
+            var lower = lowerBound(data);
+            var upper = upperBound(data);
+            if (lower >= beta) {
+                return lower;
+            }
+            if (upper <= alpha || lower == upper) {
+                return upper;
+            }
+            alpha = Math.max(alpha, lower);
+            beta = Math.min(beta, upper);
+            hashMove = bestMove(data);
+        }
+
+        var buffer = moveBuffers[empties];
+        var scores = scoreBuffers[empties];
+        var count = orderMoves(own, opponent, moves, empties, hashMove, buffer, scores);
+
+        var initialAlpha = alpha;
+        var bestScore = -MAX_SCORE - 1;
+        var bestMove = -1;
+        for (var i = 0; i < count; i++) {
+            var move = MoveOrdering.nextMove(buffer, scores, i, count);
+            var flips = FlipTables.findFlips(move, own, opponent);
+            var childOwn = opponent & ~flips;
+            var childOpponent = own | flips | (1L << move);
+            var lower = Math.max(alpha, bestScore);
+            int score;
+            if (i == 0) {
+                score = -search(childOwn, childOpponent, -beta, -lower);
+            } else {
+                // the first move is usually best, so the rest are only tested against it with a null window
+                score = -search(childOwn, childOpponent, -lower - 1, -lower);
+                if (score > lower && score < beta && !stopped) {
+                    score = -search(childOwn, childOpponent, -beta, -score);
+                }
+            }
+            if (stopped) {
+                return 0;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+                if (score >= beta) {
+                    break;
+                }
+            }
+        }
+
+        if (hashed) {
+            var lower = bestScore > initialAlpha ? bestScore : -MAX_SCORE;
+            var upper = bestScore < beta ? bestScore : MAX_SCORE;
+            hashOwn[index] = own;
+            hashOpponent[index] = opponent;
+            hashData[index] = pack(lower, upper, bestMove);
+        }
+        return bestScore;
+    }
+
+    // fastest first: moves that leave the opponent the fewest replies come first, as they are the most likely
+    // to cut off and lead to the smallest trees, ties go to moves into quadrants with an odd number of empties
+    private static int orderMoves(long own, long opponent, long moves, int empties, int hashMove, int[] buffer, int[] scores) {
+        var parity = findParity(~(own | opponent));
+        var count = 0;
+        for (; moves != 0; moves = OthelloBoard.removeFirstMove(moves)) {
+            var move = OthelloBoard.firstMove(moves);
+            var score = ((parity >> findQuadrant(move)) & 1) * 32 + MoveOrdering.squarePriority(move) / 16;
+            if (move == hashMove) {
+                score = Integer.MAX_VALUE;
+            } else if (empties >= FASTEST_FIRST_MIN_EMPTIES) {
+                var flips = FlipTables.findFlips(move, own, opponent);
+                var replies = OthelloBoard.findLegalMoves(opponent & ~flips, own | flips | (1L << move));
+                score -= Long.bitCount(replies) * 64;
+            }
+            buffer[count] = move;
+            scores[count] = score;
+            count++;
+        }
+        return count;
+    }
+
+    // the last empty square, either side that can move there fills the board
+    private int solve1(long own, long opponent, int square) {
+        nodesVisited++;
+        var flips = FlipTables.findFlips(square, own, opponent);
+        if (flips != 0) {
+            var flipped = Long.bitCount(flips);
+            return Long.bitCount(own) - Long.bitCount(opponent) + 2 * flipped + 1;
+        }
+        flips = FlipTables.findFlips(square, opponent, own);
+        if (flips != 0) {
+            var flipped = Long.bitCount(flips);
+            return Long.bitCount(own) - Long.bitCount(opponent) - 2 * flipped - 1;
+        }
+        return findFinalScore(own, opponent);
+    }
+
+    private int solve2(long own, long opponent, int alpha, int beta, int sq1, int sq2, boolean passed) {
+        nodesVisited++;
+        var bestScore = -MAX_SCORE - 1;
+
+        var flips = FlipTables.findFlips(sq1, own, opponent);
+        if (flips != 0) {
+            bestScore = -solve1(opponent & ~flips, own | flips | (1L << sq1), sq2);
+            if (bestScore >= beta) {
+                return bestScore;
+            }
+        }
+        flips = FlipTables.findFlips(sq2, own, opponent);
+        if (flips != 0) {
+            var score = -solve1(opponent & ~flips, own | flips | (1L << sq2), sq1);
+            bestScore = Math.max(bestScore, score);
+        }
+
+        if (bestScore == -MAX_SCORE - 1) {
+            if (passed) {
+                return findFinalScore(own, opponent);
+            }
+            return -solve2(opponent, own, -beta, -alpha, sq1, sq2, true);
+        }
+        return bestScore;
+    }
+
+    private int solve3(long own, long opponent, int alpha, int beta, int sq1, int sq2, int sq3) {
+        // the square alone in its quadrant is tried first
+        if (findQuadrant(sq1) == findQuadrant(sq2)) {
+            return solve3(own, opponent, alpha, beta, sq3, sq1, sq2, false);
+        } else if (findQuadrant(sq1) == findQuadrant(sq3)) {
+            return solve3(own, opponent, alpha, beta, sq2, sq1, sq3, false);
+        }
+        return solve3(own, opponent, alpha, beta, sq1, sq2, sq3, false);
+    }
+
+    private int solve3(long own, long opponent, int alpha, int beta, int sq1, int sq2, int sq3, boolean passed) {
+        nodesVisited++;
+        var bestScore = -MAX_SCORE - 1;
+
+        var flips = FlipTables.findFlips(sq1, own, opponent);
+        if (flips != 0) {
+            bestScore = -solve2(opponent & ~flips, own | flips | (1L << sq1), -beta, -alpha, sq2, sq3, false);
+            if (bestScore >= beta) {
+                return bestScore;
+            }
+        }
+        flips = FlipTables.findFlips(sq2, own, opponent);
+        if (flips != 0) {
+            var score = -solve2(opponent & ~flips, own | flips | (1L << sq2), -beta, -Math.max(alpha, bestScore), sq1, sq3, false);
+            bestScore = Math.max(bestScore, score);
+            if (bestScore >= beta) {
+                return bestScore;
+            }
+        }
+        flips = FlipTables.findFlips(sq3, own, opponent);
+        if (flips != 0) {
+            var score = -solve2(opponent & ~flips, own | flips | (1L << sq3), -beta, -Math.max(alpha, bestScore), sq1, sq2, false);
+            bestScore = Math.max(bestScore, score);
+        }
+
+        if (bestScore == -MAX_SCORE - 1) {
+            if (passed) {
+                return findFinalScore(own, opponent);
+            }
+            return -solve3(opponent, own, -beta, -alpha, sq1, sq2, sq3, true);
+        }
+        return bestScore;
+    }
+
+    private static int findIndex(long own, long opponent) {
+        var key = own * 0x9E3779B97F4A7C15L ^ Long.rotateLeft(opponent * 0xC2B2AE3D27D4EB4FL, 31);
+        return (int) (key >>> (64 - HASH_BITS));
+    }
+
+    // bounds are stored offset by the max score so they fit in a byte each, and 0 is never a stored entry
+    private static int pack(int lower, int upper, int bestMove) {
+        return (lower + MAX_SCORE) | (upper + MAX_SCORE) << 8 | (bestMove + 1) << 16;
+    }
+
+    private static int lowerBound(int data) {
+        return (data & 0xFF) - MAX_SCORE;
+    }
+
+    private static int upperBound(int data) {
+        return ((data >>> 8) & 0xFF) - MAX_SCORE;
+    }
+
+    private static int bestMove(int data) {
+        return ((data >>> 16) & 0xFF) - 1;
+    }
+
+    // usage: EndgameSolver [empties] [positions], solves positions reached by random play and prints the throughput
+    public static void main(String[] args) {
+        var empties = args.length > 0 ? Integer.parseInt(args[0]) : 14;
+        var positions = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        var random = new Random(0);
+        var solver = new EndgameSolver();
+        var totalNodes = 0L;
+        var totalTime = 0L;
+        for (var i = 0; i < positions; i++) {
+            var board = RandomPositions.randomPosition(random, empties);
+            var startTime = System.nanoTime();
+            var score = solver.solve(board, Long.MAX_VALUE);
+            var timeTaken = System.nanoTime() - startTime;
+            totalNodes += solver.getNodesVisited();
+            totalTime += timeTaken;
+            System.out.printf("%s score %d, nodes %d, %d ms%n", BoardCodec.toText(board), score,
+                solver.getNodesVisited(), timeTaken / 1_000_000);
+        }
+        System.out.printf("total nodes %d, %d ms, %.1f M nodes/s%n", totalNodes, totalTime / 1_000_000,
+            totalNodes * 1000.0 / Math.max(totalTime, 1));
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package engine;
+
+// scores the leaves of a search, positive scores are good for black and negative scores are good for white
+// scores are in Score units and within Score.MAX_HEURISTIC, the range beyond is kept for exact results
+// an evaluator may be shared by agents on different threads, so it must not keep state between calls
+public interface Evaluator {
+
+    int evaluate(OthelloBoard board);
+
+    // an accumulator for one search, evaluators that cannot be updated move by move recompute the board at each leaf
+    default Accumulator newAccumulator() {
+        return new Accumulator() {
+            @Override
+            public void reset(OthelloBoard board) {
+            }
+
+            @Override
+            public void makeMove(int square, long flips, boolean blackMoved) {
+            }
+
+            @Override
+            public void unmakeMove(int square, long flips, boolean blackMoved) {
+            }
+
+            @Override
+            public int evaluate(OthelloBoard board) {
+                return Evaluator.this.evaluate(board);
+            }
+        };
+    }
+
+    // follows the board of a search through its moves, so evaluating a leaf only reads what was accumulated
+    // it belongs to the thread of one search, and gives the same scores as the evaluator it was created by
+    interface Accumulator {
+
+        // starts following the board as it is now
+        void reset(OthelloBoard board);
+
+        // called after the move is made, with the flips it returned and whether black made it
+        void makeMove(int square, long flips, boolean blackMoved);
+
+        // called after the move is unmade, with the same arguments it was made with
+        void unmakeMove(int square, long flips, boolean blackMoved);
+
+        int evaluate(OthelloBoard board);
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package engine;
+
+public final class FlipTables {
+
+    // directions in the order of the ray table, the first four move towards higher squares and the last four lower
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, -1}, {1, 0}, {1, 1}, {0, -1}, {-1, 1}, {-1, 0}, {-1, -1}};
+    private static final int POSITIVE_DIRECTIONS = 4;
+    // the squares on the line leaving each square in each direction, not including the square itself
+    private static final long[][] RAYS = createRays();
+
+    private FlipTables() {
+    }
+
+    private static long[][] createRays() {
+        var rays = new long[64][DIRECTIONS.length];
+        for (var square = 0; square < 64; square++) {
+            for (var d = 0; d < DIRECTIONS.length; d++) {
+                var row = square / 8 + DIRECTIONS[d][0];
+                var col = square % 8 + DIRECTIONS[d][1];
+                while (OthelloBoard.inBounds(row, col)) {
+                    rays[square][d] |= 1L << (row * 8 + col);
+                    row += DIRECTIONS[d][0];
+                    col += DIRECTIONS[d][1];
+                }
+            }
+        }
+        return rays;
+    }
+
+    // finds the mask of opponent discs flipped by placing a disc on the square, the line in each direction is read
+    // from the ray table and the nearest square that is not an opponent disc ends the potential flank
+    public static long findFlips(int square, long own, long opponent) {
+        var rays = RAYS[square];
+        var notOpponent = ~opponent;
+        var flips = 0L;
+
+        for (var d = 0; d < POSITIVE_DIRECTIONS; d++) {
+            var ray = rays[d];
+            // the nearest blocker on a ray towards higher squares is its lowest bit
+            var blocker = ray & notOpponent;
+            blocker &= -blocker;
+            if ((blocker & own) != 0) {
+                flips |= ray & (blocker - 1);
+            }
+        }
+        for (var d = POSITIVE_DIRECTIONS; d < DIRECTIONS.length; d++) {
+            var ray = rays[d];
+            // the nearest blocker on a ray towards lower squares is its highest bit
+            var blocker = Long.highestOneBit(ray & notOpponent);
+            if ((blocker & own) != 0) {
+                flips |= ray & -(blocker << 1);
+            }
+        }
+        return flips;
+    }
+}
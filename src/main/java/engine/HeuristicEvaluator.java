@@ -0,0 +1,19 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package engine;
+
+// the hand weighted blend of parity, corners, mobility and x/c squares the agent has always used
+public final class HeuristicEvaluator implements Evaluator {
+
+    public static final HeuristicEvaluator INSTANCE = new HeuristicEvaluator();
+
+    private HeuristicEvaluator() {
+    }
+
+    @Override
+    public int evaluate(OthelloBoard board) {
+        return OthelloAgent.findHeuristic(board);
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package engine;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+// orders the moves of each node so the ones most likely to cause a cutoff are searched first: the best move
+// stored in the transposition table, then the killer moves of the ply, then by history and square priority
+public final class MoveOrdering {
+
+    public static final int NO_MOVE = -1;
+
+    private static final int TT_MOVE_SCORE = 1 << 30;
+    private static final int KILLER_SCORE = 1 << 29;
+    // history is halved when any square reaches this, so shifted history scores stay below the killer scores
+    private static final int MAX_HISTORY = 1 << 20;
+    private static final int HISTORY_SHIFT = 8;
+
+    // static priority of each square, corners first, then edges, and the squares next to the corners last
+    private static final int[] SQUARE_PRIORITY = {
+        100, -20, 10, 5, 5, 10, -20, 100,
+        -20, -50, -2, -2, -2, -2, -50, -20,
+        10, -2, 1, 1, 1, 1, -2, 10,
+        5, -2, 1, 0, 0, 1, -2, 5,
+        5, -2, 1, 0, 0, 1, -2, 5,
+        10, -2, 1, 1, 1, 1, -2, 10,
+        -20, -50, -2, -2, -2, -2, -50, -20,
+        100, -20, 10, 5, 5, 10, -20, 100
+    };
+
+    // two killer slots per ply, the most recent cutoff move is kept in the first slot
+    private int[][] killers = new int[0][];
+    private final int[] history = new int[64];
+
+    @Getter
+    private int expandedNodes = 0;
+    @Getter
+    private int cutoffs = 0;
+    private int firstMoveCutoffs = 0;
+
+    public static int squarePriority(int square) {
+        return SQUARE_PRIORITY[square];
+    }
+
+    // killers only apply to the position they were found in, while history is aged so it carries between searches
+    public void startSearch() {
+        for (var slots : killers) {
+            Arrays.fill(slots, NO_MOVE);
+        }
+        for (var i = 0; i < history.length; i++) {
+            history[i] >>= 1;
+        }
+        expandedNodes = 0;
+        cutoffs = 0;
+        firstMoveCutoffs = 0;
+    }
+
+    // writes the moves of a node to the buffers with their ordering scores and returns the number of moves
+    public int orderMoves(long moves, int ttMove, int ply, int[] outMoves, int[] outScores) {
+        var slots = findKillers(ply);
+        expandedNodes++;
+
+        var count = 0;
+        for (; moves != 0; moves = OthelloBoard.removeFirstMove(moves)) {
+            var move = OthelloBoard.firstMove(moves);
+            int score;
+            if (move == ttMove) {
+                score = TT_MOVE_SCORE;
+            } else if (move == slots[0]) {
+                score = KILLER_SCORE + 1;
+            } else if (move == slots[1]) {
+                score = KILLER_SCORE;
+            } else {
+                score = (history[move] << HISTORY_SHIFT) + SQUARE_PRIORITY[move];
+            }
+            outMoves[count] = move;
+            outScores[count] = score;
+            count++;
+        }
+        return count;
+    }
+
+    // selects the best of the remaining moves and swaps it to the index, most nodes cut off after a move or two
+    // so this is cheaper than sorting the whole list up front
+    public static int nextMove(int[] moves, int[] scores, int index, int count) {
+        var best = index;
+        for (var i = index + 1; i < count; i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        var move = moves[best];
+        moves[best] = moves[index];
+        moves[index] = move;
+        var score = scores[best];
+        scores[best] = scores[index];
+        scores[index] = score;
+        return move;
+    }
+
+    // called when a move causes a cutoff, index is the position of the move in the node's search order
+    public void onCutoff(int move, int ply, int depth, int index) {
+        cutoffs++;
+        if (index == 0) {
+            firstMoveCutoffs++;
+        }
+
+        var slots = findKillers(ply);
+        if (slots[0] != move) {
+            slots[1] = slots[0];
+            slots[0] = move;
+        }
+
+        history[move] += depth * depth;
+        if (history[move] >= MAX_HISTORY) {
+            for (var i = 0; i < history.length; i++) {
+                history[i] >>= 1;
+            }
+        }
+    }
+
+    private int[] findKillers(int ply) {
+        if (ply >= killers.length) {
+            var size = killers.length;
+            killers = Arrays.copyOf(killers, ply + 1);
+            for (var i = size; i < killers.length; i++) {
+                killers[i] = new int[]{NO_MOVE, NO_MOVE};
+            }
+        }
+        return killers[ply];
+    }
+
+    // the share of expanded nodes that were cut off before all their moves were searched
+    public float getCutoffRate() {
+        return expandedNodes == 0 ? 0f : (float) cutoffs / expandedNodes;
+    }
+
+    // the share of cutoffs caused by the first move searched, the closer to 1 the better the ordering
+    public float getFirstMoveCutoffRate() {
+        return cutoffs == 0 ? 0f : (float) firstMoveCutoffs / cutoffs;
+    }
+}
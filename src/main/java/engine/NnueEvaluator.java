@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package engine;
+
+import javax.annotation.Nullable;
+import java.io.*;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+// scores a board with a small neural network: the inputs are the black and white discs on each square, the hidden
+// layer is HIDDEN clipped relus, and the output layer has its own weights for each phase of the game
+// inference is in fixed point, the hidden layer's sums are kept in an accumulator of shorts and a search updates
+// it from the placed and flipped discs of each move, so a leaf only clips the accumulator and takes one dot product
+public final class NnueEvaluator implements Evaluator {
+
+    public static final String DEFAULT_WEIGHTS = "/weights/nnue.bin.gz";
+    public static final int HIDDEN = 64;
+    // a black disc on a square is the square's input, and a white disc the square's input plus 64
+    static final int INPUTS = 128;
+    static final int PHASES = PatternEvaluator.PHASES;
+    // the hidden weights have this many units per unit of activation, and the activation is clipped to [0, 1]
+    static final short ACTIVATION_SCALE = 256;
+    // the output weights have this many units per disc, for an activation of 1
+    static final int OUTPUT_SCALE = 64;
+    // the accumulator holds the bias and at most 64 input weights, so limiting them to this never overflows a short
+    static final int MAX_HIDDEN_WEIGHT = Short.MAX_VALUE / 65;
+
+    // the sum of the output layer has ACTIVATION_SCALE * OUTPUT_SCALE units per disc, a score has Score.SCALE
+    private static final int OUTPUT_DIVISOR = ACTIVATION_SCALE * OUTPUT_SCALE / Score.SCALE;
+
+    // the binary format: magic, version, hidden size and phases, then the hidden weights by input, the hidden biases
+    // and the output weights by phase as big-endian shorts, and the output biases as ints
+    private static final int MAGIC = 0x4f4e4e55;
+    private static final int VERSION = 1;
+
+    private static final NnueKernel KERNEL = NnueKernel.create();
+
+    // the most a leaf may cost with the move to it made and unmade, at the low end of the 240-320 ns the heuristic
+    // costs on the reference machine, so the network can replace the heuristic without the search visiting fewer nodes
+    static final double EVAL_BUDGET_NANOS = 250;
+
+    private final short[] hiddenWeights;
+    private final short[] hiddenBiases;
+    private final short[] outputWeights;
+    private final int[] outputBiases;
+    // the change to the accumulator when black flips the disc on each square, white flipping it is the negation
+    private final short[] flipWeights;
+
+    public NnueEvaluator(short[] hiddenWeights, short[] hiddenBiases, short[] outputWeights, int[] outputBiases) {
+        if (hiddenWeights.length != INPUTS * HIDDEN || hiddenBiases.length != HIDDEN
+            || outputWeights.length != PHASES * HIDDEN || outputBiases.length != PHASES) {
+            throw new IllegalArgumentException("Expected weights for " + INPUTS + " inputs, " + HIDDEN
+                + " hidden units and " + PHASES + " phases");
+        }
+        for (var weight : hiddenWeights) {
+            if (Math.abs(weight) > MAX_HIDDEN_WEIGHT) {
+                throw new IllegalArgumentException("Hidden weight " + weight + " is outside of +-" + MAX_HIDDEN_WEIGHT);
+            }
+        }
+        for (var bias : hiddenBiases) {
+            if (Math.abs(bias) > MAX_HIDDEN_WEIGHT) {
+                throw new IllegalArgumentException("Hidden bias " + bias + " is outside of +-" + MAX_HIDDEN_WEIGHT);
+            }
+        }
+        this.hiddenWeights = hiddenWeights;
+        this.hiddenBiases = hiddenBiases;
+        this.outputWeights = outputWeights;
+        this.outputBiases = outputBiases;
+
+        this.flipWeights = new short[64 * HIDDEN];
+        for (var i = 0; i < flipWeights.length; i++) {
+            flipWeights[i] = (short) (hiddenWeights[i] - hiddenWeights[64 * HIDDEN + i]);
+        }
+    }
+
+    short[] getHiddenWeights() {
+        return hiddenWeights;
+    }
+
+    short[] getHiddenBiases() {
+        return hiddenBiases;
+    }
+
+    private void refresh(OthelloBoard board, short[] accumulator) {
+        System.arraycopy(hiddenBiases, 0, accumulator, 0, HIDDEN);
+        for (var discs = board.getDiscs(OthelloBoard.BLACK); discs != 0; discs &= discs - 1) {
+            KERNEL.add(accumulator, hiddenWeights, Long.numberOfTrailingZeros(discs) * HIDDEN);
+        }
+        for (var discs = board.getDiscs(OthelloBoard.WHITE); discs != 0; discs &= discs - 1) {
+            KERNEL.add(accumulator, hiddenWeights, (64 + Long.numberOfTrailingZeros(discs)) * HIDDEN);
+        }
+    }
+
+    private int output(OthelloBoard board, short[] accumulator) {
+        var phase = PatternEvaluator.phase(board);
+        var sum = KERNEL.dot(accumulator, ACTIVATION_SCALE, outputWeights, phase * HIDDEN) + outputBiases[phase];
+        return Score.clamp(sum / OUTPUT_DIVISOR);
+    }
+
+    @Override
+    public int evaluate(OthelloBoard board) {
+        var accumulator = new short[HIDDEN];
+        refresh(board, accumulator);
+        return output(board, accumulator);
+    }
+
+    @Override
+    public Accumulator newAccumulator() {
+        return new NnueAccumulator();
+    }
+
+    // keeps the hidden layer's sums, a move adds the weights of the mover's disc on the placed square and the flip
+    // weights of each flipped square, and unmaking it subtracts them again
+    private final class NnueAccumulator implements Accumulator {
+
+        private final short[] sums = new short[HIDDEN];
+
+        @Override
+        public void reset(OthelloBoard board) {
+            refresh(board, sums);
+        }
+
+        @Override
+        public void makeMove(int square, long flips, boolean blackMoved) {
+            KERNEL.add(sums, hiddenWeights, (blackMoved ? square : 64 + square) * HIDDEN);
+            for (; flips != 0; flips &= flips - 1) {
+                var offset = Long.numberOfTrailingZeros(flips) * HIDDEN;
+                if (blackMoved) {
+                    KERNEL.add(sums, flipWeights, offset);
+                } else {
+                    KERNEL.subtract(sums, flipWeights, offset);
+                }
+            }
+        }
+
+        @Override
+        public void unmakeMove(int square, long flips, boolean blackMoved) {
+            KERNEL.subtract(sums, hiddenWeights, (blackMoved ? square : 64 + square) * HIDDEN);
+            for (; flips != 0; flips &= flips - 1) {
+                var offset = Long.numberOfTrailingZeros(flips) * HIDDEN;
+                if (blackMoved) {
+                    KERNEL.subtract(sums, flipWeights, offset);
+                } else {
+                    KERNEL.add(sums, flipWeights, offset);
+                }
+            }
+        }
+
+        @Override
+        public int evaluate(OthelloBoard board) {
+            return output(board, sums);
+        }
+    }
+
+    public void write(DataOutput output) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(HIDDEN);
+        output.writeInt(PHASES);
+        for (var weights : new short[][]{hiddenWeights, hiddenBiases, outputWeights}) {
+            for (var weight : weights) {
+                output.writeShort(weight);
+            }
+        }
+        for (var bias : outputBiases) {
+            output.writeInt(bias);
+        }
+    }
+
+    public static NnueEvaluator read(DataInput input) throws IOException {
+        if (input.readInt() != MAGIC) {
+            throw new IOException("Not a network weights file");
+        }
+        var version = input.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported network weights version " + version);
+        }
+        var hidden = input.readInt();
+        var phases = input.readInt();
+        if (hidden != HIDDEN || phases != PHASES) {
+            throw new IOException("Network weights were trained for a different network");
+        }
+
+        var hiddenWeights = new short[INPUTS * HIDDEN];
+        var hiddenBiases = new short[HIDDEN];
+        var outputWeights = new short[PHASES * HIDDEN];
+        for (var weights : new short[][]{hiddenWeights, hiddenBiases, outputWeights}) {
+            for (var i = 0; i < weights.length; i++) {
+                weights[i] = input.readShort();
+            }
+        }
+        var outputBiases = new int[PHASES];
+        for (var i = 0; i < outputBiases.length; i++) {
+            outputBiases[i] = input.readInt();
+        }
+        try {
+            return new NnueEvaluator(hiddenWeights, hiddenBiases, outputWeights, outputBiases);
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("Invalid network weights", ex);
+        }
+    }
+
+    // loads the gzipped weights from the classpath, or returns null if there are none
+    @Nullable
+    public static NnueEvaluator loadResource(String path) throws IOException {
+        try (var stream = NnueEvaluator.class.getResourceAsStream(path)) {
+            if (stream == null) {
+                return null;
+            }
+            var input = new DataInputStream(new BufferedInputStream(new GZIPInputStream(stream)));
+            return read(input);
+        }
+    }
+
+    // the nanoseconds per leaf of an evaluator as a search uses it: the move to the leaf is made through an accumulator
+    // following its parent, the leaf is evaluated and the move unmade again
+    private static double benchmark(Evaluator evaluator, OthelloBoard[] parents, OthelloBoard[] children, int[] moves,
+                                    long[] flips, int rounds) {
+        var accumulators = new Accumulator[parents.length];
+        for (var i = 0; i < parents.length; i++) {
+            accumulators[i] = evaluator.newAccumulator();
+            accumulators[i].reset(parents[i]);
+        }
+
+        var checksum = 0L;
+        var startTime = 0L;
+        // the first half of the rounds warm up the jit and are not timed
+        for (var round = -rounds; round < rounds; round++) {
+            if (round == 0) {
+                startTime = System.nanoTime();
+            }
+            for (var i = 0; i < parents.length; i++) {
+                var blackMoved = parents[i].isBlackMove();
+                accumulators[i].makeMove(moves[i], flips[i], blackMoved);
+                checksum += accumulators[i].evaluate(children[i]);
+                accumulators[i].unmakeMove(moves[i], flips[i], blackMoved);
+            }
+        }
+        var timeTaken = System.nanoTime() - startTime;
+        // the checksum is used so the evaluations are not optimized away
+        if (checksum == Long.MIN_VALUE) {
+            System.out.println("checksum: " + checksum);
+        }
+        return (double) timeTaken / ((long) parents.length * rounds);
+    }
+
+    // usage: NnueEvaluator [positions] [rounds], run with --add-modules jdk.incubator.vector to use the vector kernel
+    // exits with status 1 when the network is over the budget, the other evaluators are printed for comparison
+    public static void main(String[] args) throws IOException {
+        var positions = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 10;
+        var rounds = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+        var network = loadResource(DEFAULT_WEIGHTS);
+        if (network == null) {
+            System.out.println("No network weights at " + DEFAULT_WEIGHTS);
+            System.exit(1);
+        }
+        var patterns = PatternEvaluator.loadResource(PatternEvaluator.DEFAULT_WEIGHTS);
+
+        // each leaf is a random move from a position of a random game
+        var random = new Random(0);
+        var parents = new OthelloBoard[positions];
+        var children = new OthelloBoard[positions];
+        var moves = new int[positions];
+        var flips = new long[positions];
+        for (var i = 0; i < positions; i++) {
+            parents[i] = RandomPositions.randomPosition(random, 1 + random.nextInt(50));
+            moves[i] = OthelloBoard.randomMove(random, parents[i].findLegalMoves());
+            children[i] = OthelloBoard.from(parents[i]);
+            flips[i] = children[i].makeMove(moves[i]);
+        }
+
+        System.out.printf("kernel: %s%n", KERNEL.getClass().getSimpleName());
+        System.out.printf("heuristic: %.1f ns/eval%n",
+            benchmark(HeuristicEvaluator.INSTANCE, parents, children, moves, flips, rounds));
+        if (patterns != null) {
+            System.out.printf("patterns: %.1f ns/eval%n", benchmark(patterns, parents, children, moves, flips, rounds));
+        }
+        var cost = benchmark(network, parents, children, moves, flips, rounds);
+        System.out.printf("network: %.1f ns/eval, %s the budget of %.1f ns/eval%n", cost,
+            cost <= EVAL_BUDGET_NANOS ? "within" : "over", EVAL_BUDGET_NANOS);
+        if (cost > EVAL_BUDGET_NANOS) {
+            System.exit(1);
+        }
+    }
+}
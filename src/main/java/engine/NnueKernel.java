@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package engine;
+
+import static utils.LogUtils.LOGGER;
+
+// the arithmetic of the network's integer inference, on accumulators of short lanes
+public interface NnueKernel {
+
+    // adds the weights starting at the offset to each lane of the accumulator
+    void add(short[] accumulator, short[] weights, int offset);
+
+    // subtracts the weights starting at the offset from each lane of the accumulator
+    void subtract(short[] accumulator, short[] weights, int offset);
+
+    // the dot product of the accumulator's lanes clipped to [0, clip] with the weights starting at the offset
+    int dot(short[] accumulator, short clip, short[] weights, int offset);
+
+    // uses the vector kernel when the jvm was started with --add-modules jdk.incubator.vector, or the scalar kernel otherwise
+    static NnueKernel create() {
+        if (ModuleLayer.boot().findModule(BatchKernel.VECTOR_MODULE).isPresent()) {
+            try {
+                return new VectorNnueKernel();
+            } catch (LinkageError ex) {
+                LOGGER.warn("Failed to load the vector nnue kernel, falling back to scalar", ex);
+            }
+        }
+        return new ScalarNnueKernel();
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package engine;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static engine.NnueEvaluator.*;
+
+// fits the network offline on the self play samples of PatternTrainer, by stochastic gradient descent on the squared
+// error in floats, and quantizes it to the evaluator's fixed point weights afterwards
+// each time a sample is used it is read in a random symmetry, and with the colors swapped half of the time, so the
+// network learns the symmetries the pattern tables have built in
+public final class NnueTrainer {
+
+    private static final float LEARNING_RATE = 0.005f;
+    // the labels are divided by this so the outputs the network learns are within about 1
+    private static final float LABEL_SCALE = 64f;
+    private static final float INITIAL_WEIGHT = 0.1f;
+    private static final float INITIAL_BIAS = 0.5f;
+
+    private final Random random;
+    private final float[] hiddenWeights = new float[INPUTS * HIDDEN];
+    private final float[] hiddenBiases = new float[HIDDEN];
+    private final float[] outputWeights = new float[PHASES * HIDDEN];
+    private final float[] outputBiases = new float[PHASES];
+
+    public NnueTrainer(Random random) {
+        this.random = random;
+        for (var i = 0; i < hiddenWeights.length; i++) {
+            hiddenWeights[i] = (float) random.nextGaussian() * INITIAL_WEIGHT;
+        }
+        for (var i = 0; i < outputWeights.length; i++) {
+            outputWeights[i] = (float) random.nextGaussian() * INITIAL_WEIGHT;
+        }
+        // the hidden units start in the middle of their range so none of them start clipped
+        Arrays.fill(hiddenBiases, INITIAL_BIAS);
+    }
+
+    public void train(PatternTrainer samples, int epochs) {
+        var sampleCount = samples.getSampleCount();
+        var order = new int[sampleCount];
+        for (var i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        var inputs = new int[64];
+        var sums = new float[HIDDEN];
+        var activations = new float[HIDDEN];
+        var steps = new float[HIDDEN];
+
+        for (var epoch = 0; epoch < epochs; epoch++) {
+            for (var i = order.length - 1; i > 0; i--) {
+                var j = random.nextInt(i + 1);
+                var temp = order[i];
+                order[i] = order[j];
+                order[j] = temp;
+            }
+
+            var totalError = 0.0;
+            for (var sample : order) {
+                var transform = random.nextInt(Symmetry.COUNT);
+                var swapped = random.nextBoolean();
+                var black = Symmetry.transform(samples.getBlackDiscs()[sample], transform);
+                var white = Symmetry.transform(samples.getWhiteDiscs()[sample], transform);
+                var label = samples.getLabels()[sample] / LABEL_SCALE;
+                if (swapped) {
+                    var temp = black;
+                    black = white;
+                    white = temp;
+                    label = -label;
+                }
+
+                var inputCount = findInputs(black, white, inputs);
+                var phase = PatternEvaluator.phase(OthelloBoard.of(black, white, true));
+                var outputOffset = phase * HIDDEN;
+                var prediction = forward(inputs, inputCount, phase, sums, activations);
+                var error = prediction - label;
+                totalError += error * error;
+
+                // the gradient only flows back through the hidden units that are not clipped
+                var step = LEARNING_RATE * error;
+                for (var h = 0; h < HIDDEN; h++) {
+                    var clipped = sums[h] <= 0f || sums[h] >= 1f;
+                    steps[h] = clipped ? 0f : step * outputWeights[outputOffset + h];
+                    outputWeights[outputOffset + h] -= step * activations[h];
+                    hiddenBiases[h] -= steps[h];
+                }
+                outputBiases[phase] -= step;
+                for (var i = 0; i < inputCount; i++) {
+                    var offset = inputs[i] * HIDDEN;
+                    for (var h = 0; h < HIDDEN; h++) {
+                        hiddenWeights[offset + h] -= steps[h];
+                    }
+                }
+            }
+            System.out.printf("epoch %d: rms error %.3f discs%n", epoch, LABEL_SCALE * Math.sqrt(totalError / sampleCount));
+        }
+    }
+
+    // the inputs of the discs, black's on their squares and white's on their squares plus 64
+    private static int findInputs(long black, long white, int[] inputs) {
+        var inputCount = 0;
+        for (var discs = black; discs != 0; discs &= discs - 1) {
+            inputs[inputCount++] = Long.numberOfTrailingZeros(discs);
+        }
+        for (var discs = white; discs != 0; discs &= discs - 1) {
+            inputs[inputCount++] = 64 + Long.numberOfTrailingZeros(discs);
+        }
+        return inputCount;
+    }
+
+    // the output in label units, leaving the hidden sums and their clipped activations for the backward pass
+    private float forward(int[] inputs, int inputCount, int phase, float[] sums, float[] activations) {
+        System.arraycopy(hiddenBiases, 0, sums, 0, HIDDEN);
+        for (var i = 0; i < inputCount; i++) {
+            var offset = inputs[i] * HIDDEN;
+            for (var h = 0; h < HIDDEN; h++) {
+                sums[h] += hiddenWeights[offset + h];
+            }
+        }
+        var outputOffset = phase * HIDDEN;
+        var prediction = outputBiases[phase];
+        for (var h = 0; h < HIDDEN; h++) {
+            activations[h] = Math.max(0f, Math.min(1f, sums[h]));
+            prediction += outputWeights[outputOffset + h] * activations[h];
+        }
+        return prediction;
+    }
+
+    // the float network's score of the board in discs for black, the reference its quantized evaluator follows
+    float predict(OthelloBoard board) {
+        var inputs = new int[64];
+        var inputCount = findInputs(board.getDiscs(OthelloBoard.BLACK), board.getDiscs(OthelloBoard.WHITE), inputs);
+        var prediction = forward(inputs, inputCount, PatternEvaluator.phase(board), new float[HIDDEN], new float[HIDDEN]);
+        return prediction * LABEL_SCALE;
+    }
+
+    private static short quantize(float weight, float scale, int max) {
+        return (short) Math.max(-max, Math.min(max, Math.round(weight * scale)));
+    }
+
+    public NnueEvaluator toEvaluator() {
+        var fixedHiddenWeights = new short[hiddenWeights.length];
+        for (var i = 0; i < hiddenWeights.length; i++) {
+            fixedHiddenWeights[i] = quantize(hiddenWeights[i], ACTIVATION_SCALE, MAX_HIDDEN_WEIGHT);
+        }
+        var fixedHiddenBiases = new short[HIDDEN];
+        for (var h = 0; h < HIDDEN; h++) {
+            fixedHiddenBiases[h] = quantize(hiddenBiases[h], ACTIVATION_SCALE, MAX_HIDDEN_WEIGHT);
+        }
+        // the outputs are scaled back up to discs
+        var fixedOutputWeights = new short[outputWeights.length];
+        for (var i = 0; i < outputWeights.length; i++) {
+            fixedOutputWeights[i] = quantize(outputWeights[i], LABEL_SCALE * OUTPUT_SCALE, Short.MAX_VALUE);
+        }
+        var fixedOutputBiases = new int[PHASES];
+        for (var phase = 0; phase < PHASES; phase++) {
+            fixedOutputBiases[phase] = Math.round(outputBiases[phase] * LABEL_SCALE * OUTPUT_SCALE * ACTIVATION_SCALE);
+        }
+        return new NnueEvaluator(fixedHiddenWeights, fixedHiddenBiases, fixedOutputWeights, fixedOutputBiases);
+    }
+
+    // usage: NnueTrainer [games] [epochs] [output], writes the gzipped weights to the output file and plays a match
+    // of the network against the heuristic, and against the pattern weights when they are bundled
+    public static void main(String[] args) throws IOException {
+        var games = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        var epochs = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        var output = args.length > 2 ? args[2] : "nnue.bin.gz";
+
+        var samples = new PatternTrainer(new Random(1));
+        var startTime = System.currentTimeMillis();
+        for (var game = 0; game < games; game++) {
+            samples.playGame();
+            if ((game + 1) % 1000 == 0) {
+                System.out.printf("played %d games, %d samples, %d s%n", game + 1, samples.getSampleCount(),
+                    (System.currentTimeMillis() - startTime) / 1000);
+            }
+        }
+
+        var trainer = new NnueTrainer(new Random(3));
+        trainer.train(samples, epochs);
+        var evaluator = trainer.toEvaluator();
+        try (var stream = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(output))))) {
+            evaluator.write(stream);
+        }
+        System.out.printf("wrote weights to %s%n", output);
+
+        var difference = PatternTrainer.playMatch(evaluator, HeuristicEvaluator.INSTANCE, 50, 4, new Random(2));
+        System.out.printf("disc difference per game against the heuristic: %.2f%n", difference);
+        var patterns = PatternEvaluator.loadResource(PatternEvaluator.DEFAULT_WEIGHTS);
+        if (patterns != null) {
+            difference = PatternTrainer.playMatch(evaluator, patterns, 50, 4, new Random(2));
+            System.out.printf("disc difference per game against the pattern weights: %.2f%n", difference);
+        }
+    }
+}
@@ -5,245 +5,661 @@
 package engine;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static utils.LogUtils.LOGGER;
 
 public final class OthelloAgent {
 
-    private static final float INF = Float.MAX_VALUE;
+    private static final int INF = Score.INF;
     private static final int MIN_DEPTH = 5;
     public static final int[][] CORNERS = {{0, 0}, {0, 7}, {7, 0}, {7, 7}};
     public static final int[][] XC_SQUARES = {{1, 1}, {1, 6}, {6, 1}, {6, 6}, {0, 1}, {0, 6}, {7, 1}, {7, 6}, {1, 0}, {1, 7}, {6, 0}, {6, 7}};
+    private static final long CORNERS_MASK = toMask(CORNERS);
+    private static final long XC_SQUARES_MASK = toMask(XC_SQUARES);
+
+    public static final int DEFAULT_TT_SIZE_MB = 16;
+    private static final int STOP_CHECK_MASK = (1 << 10) - 1;
+    private static final int HARD_STOP_FACTOR = 2;
+    // half width of the first aspiration window around the previous iteration's score, doubled on each failure
+    private static final int ASPIRATION_WINDOW = 10 * Score.SCALE;
+
+    // the root moves the endgame solver finished, sorted best first, with exact scores, or when exact scores are not
+    // needed with bounds for the moves after the first that only show they are no better than it
+    private record SolvedMoves(int[] moves, int[] scores, boolean complete) {
+    }
+
+    private static final SolvedMoves NO_SOLVED_MOVES = new SolvedMoves(new int[0], new int[0], false);
+
+    public enum Algorithm {
+        // fail-hard alpha-beta over an explicit stack of frames
+        ALPHA_BETA,
+        // principal variation search, the first child gets the full window and the rest null windows,
+        // and the root moves are searched in aspiration windows around the previous iteration's scores
+        PVS
+    }
 
     private final int maxTime;
+    private final Algorithm algorithm;
     private long stopTime = 0;
+    // the shallow iterations may run past the time limit so there is a result, but never past the hard stop time
+    private long hardStopTime = 0;
+    private boolean canStop = false;
+    private boolean stopped = false;
+    // set from another thread to stop the search at the next check, whatever the depth
+    private volatile boolean stopRequested = false;
     private int nodesVisited = 0;
-    private final Deque<StackFrame> stack = new ArrayDeque<>();
+    private int ttHits = 0;
+    private int ttMisses = 0;
+    private StackFrame[] frames = new StackFrame[0];
+    private final MoveOrdering ordering = new MoveOrdering();
     private final TTable table;
 
+    // helpers search the same root on other threads and share the table, they only contribute through the table
+    private ExecutorService helperExecutor = null;
+    private final List<OthelloAgent> helpers = new ArrayList<>();
+    private boolean isHelper = false;
+
+    // the endgame solver takes over searches from this many empties, it is created on the first endgame search
+    private int endgameEmpties = EndgameSolver.DEFAULT_MAX_EMPTIES;
+    private EndgameSolver solver = null;
+    // scores the leaves of the heuristic search, through an accumulator that follows the moves of the search
+    private Evaluator evaluator = HeuristicEvaluator.INSTANCE;
+    private Evaluator.Accumulator accumulator = evaluator.newAccumulator();
+
     public OthelloAgent() {
-        this((int) Math.pow(2, 12) + 1, 3000);
+        this(DEFAULT_TT_SIZE_MB, 3000);
     }
 
-    public OthelloAgent(int ttSize, int maxTime) {
-        this.table = new TTable(ttSize);
+    public OthelloAgent(int ttSizeMb, int maxTime) {
+        this(ttSizeMb, maxTime, Algorithm.ALPHA_BETA);
+    }
+
+    public OthelloAgent(int ttSizeMb, int maxTime, Algorithm algorithm) {
+        this(new TTable(ttSizeMb), maxTime, algorithm);
+    }
+
+    private OthelloAgent(TTable table, int maxTime, Algorithm algorithm) {
+        this.table = table;
         this.maxTime = maxTime;
+        this.algorithm = algorithm;
+    }
+
+    // lets searches run on more than one thread, the helper threads are taken from the executor
+    public void setHelperExecutor(ExecutorService helperExecutor) {
+        this.helperExecutor = helperExecutor;
+    }
+
+    public void setEvaluator(Evaluator evaluator) {
+        this.evaluator = evaluator;
+        this.accumulator = evaluator.newAccumulator();
+    }
+
+    public void setEndgameEmpties(int endgameEmpties) {
+        this.endgameEmpties = endgameEmpties;
+    }
+
+    public int getNodesVisited() {
+        return nodesVisited;
+    }
+
+    public void stop() {
+        stopRequested = true;
     }
 
     public List<Tile.Move> findRankedMoves(OthelloBoard board, int maxDepth) {
-        var startTime = System.currentTimeMillis();
-        nodesVisited = 0;
-        stopTime = startTime + maxTime;
+        return findRankedMoves(board, maxDepth, 1);
+    }
 
-        var moves = board.findPotentialMoves();
+    public List<Tile.Move> findRankedMoves(OthelloBoard board, int maxDepth, int threads) {
+        return search(board, maxDepth, true, threads);
+    }
 
-        List<Tile.Move> rankedMoves = new ArrayList<>();
+    public Tile.Move findBestMove(OthelloBoard board, int maxDepth) {
+        return findBestMove(board, maxDepth, 1);
+    }
 
-        // call the iterative deepening negamax to calculate the heuristic for each move and add it to list
-        for (var move : moves) {
-            var child = board.makeMoved(move);
-            var heuristic = evaluateLoop(child, maxDepth - 1);
-            rankedMoves.add(new Tile.Move(move, heuristic));
+    public Tile.Move findBestMove(OthelloBoard board, int maxDepth, int threads) {
+        var rankedMoves = search(board, maxDepth, false, threads);
+        if (rankedMoves.isEmpty()) {
+            return new Tile.Move(null, Score.toFloat(board.isBlackMove() ? -INF : INF));
         }
+        return rankedMoves.get(0);
+    }
 
-        // sort the moves to rank them properly
-        Comparator<Tile.Move> comparator = board.isBlackMove() ?
-            (m1, m2) -> Float.compare(m2.heuristic(), m1.heuristic()) :
-            (m1, m2) -> Float.compare(m1.heuristic(), m2.heuristic());
-        rankedMoves.sort(comparator);
+    // lazy smp: the helpers search the same root as this agent on the other threads, and the result is taken from
+    // this agent alone, the helpers only speed it up by filling the shared table with the positions it is about to
+    // reach, so the helpers are perturbed to search different trees than this agent and each other, see searchRoot
+    private List<Tile.Move> search(OthelloBoard board, int maxDepth, boolean exactScores, int threads) {
+        var startTime = System.currentTimeMillis();
+        var stopTime = startTime + maxTime;
+        table.startSearch();
+        stopRequested = false;
+
+        // the shallowest searches are left to play the endgame by heuristic so the weak levels stay weak
+        var solved = NO_SOLVED_MOVES;
+        if (maxDepth >= MIN_DEPTH && board.countEmpty() <= endgameEmpties) {
+            // the solver gets half of the time, and the heuristic search the rest if it cannot finish, which keeps
+            // the moves that were solved and only searches the others
+            solved = solveRoot(board, exactScores, startTime + maxTime / 2);
+            if (solved.complete()) {
+                return toRankedMoves(solved.moves(), solved.scores());
+            }
+        }
+        var solvedMoves = solved;
+
+        var helperCount = helperExecutor != null ? Math.max(threads - 1, 0) : 0;
+        var futures = new ArrayList<Future<?>>(helperCount);
+        List<Tile.Move> rankedMoves;
+        Throwable helperFailure;
+        try {
+            for (var i = 0; i < helperCount; i++) {
+                var helper = findHelper(i);
+                var perturbation = i + 1;
+                // reset before the helper is submitted, so a stop for a search that ends quickly is not lost
+                helper.stopRequested = false;
+                futures.add(helperExecutor.submit(() ->
+                    helper.searchRoot(board, maxDepth, exactScores, solvedMoves, perturbation, stopTime)));
+            }
+            rankedMoves = searchRoot(board, maxDepth, exactScores, solvedMoves, 0, stopTime);
+        } finally {
+            // the helpers are joined however the search ends, a helper still unwinding must not be resubmitted
+            // by the next search while it uses its own board and stack
+            helperFailure = joinHelpers(futures);
+        }
+        if (helperFailure != null) {
+            throw new IllegalStateException("Search helper failed", helperFailure);
+        }
 
-        // remove duplicate moves (this is possible, has minimal effect on speed of algo due to transposition tables)
-        var duplicate = new boolean[OthelloBoard.getBoardSize()][OthelloBoard.getBoardSize()];
-        for (var iterator = rankedMoves.iterator(); iterator.hasNext(); ) {
-            var move = iterator.next();
-            var row = move.tile().row();
-            var col = move.tile().col();
+        if (helperCount > 0) {
+            var helperNodes = 0;
+            for (var i = 0; i < helperCount; i++) {
+                helperNodes += helpers.get(i).nodesVisited;
+            }
+            LOGGER.info("Finished lazy smp search, threads: {}, helper_nodes_visited: {}", threads, helperNodes);
+        }
+        return rankedMoves;
+    }
 
-            if (duplicate[row][col])
-                iterator.remove();
-            duplicate[row][col] = true;
+    // stops the helpers and waits for each of them to unwind, they are stopped first so this is short even when the
+    // search itself was interrupted or failed, and returns the first helper failure or null
+    private Throwable joinHelpers(List<Future<?>> futures) {
+        for (var i = 0; i < futures.size(); i++) {
+            helpers.get(i).stop();
+        }
+        var interrupted = false;
+        Throwable failure = null;
+        for (var future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                } catch (ExecutionException ex) {
+                    if (failure == null) {
+                        failure = ex.getCause();
+                    }
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
         }
+        return failure;
+    }
 
-        table.clear();
-        return rankedMoves;
+    private OthelloAgent findHelper(int index) {
+        while (helpers.size() <= index) {
+            var helper = new OthelloAgent(table, maxTime, algorithm);
+            helper.isHelper = true;
+            helpers.add(helper);
+        }
+        var helper = helpers.get(index);
+        if (helper.evaluator != evaluator) {
+            helper.setEvaluator(evaluator);
+        }
+        return helper;
     }
 
-    public Tile.Move findBestMove(OthelloBoard board, int maxDepth) {
+    // iterative deepening over all the root moves at once, each iteration searches the moves in the order of the
+    // previous iteration's scores, and the result is always taken from the last iteration that finished in time
+    // when exact scores are not needed, moves after the first are searched against the best score so far
+    // and only get a bound, which is enough to rank the best move first
+    // the moves the solver finished keep their scores and are not searched, the best of them bounds the others
+    // helper threads are perturbed by a non-zero perturbation: odd ones search every iteration one ply deeper, up to
+    // one ply past the maximum depth, and the rest search the root moves after the first in a rotated order, the
+    // rotation growing with the perturbation, so no two threads walk the same tree in lockstep
+    private List<Tile.Move> searchRoot(OthelloBoard board, int maxDepth, boolean exactScores, SolvedMoves solved,
+                                       int perturbation, long stopTime) {
         var startTime = System.currentTimeMillis();
         nodesVisited = 0;
-        stopTime = startTime + maxTime;
-
-        var moves = board.findPotentialMoves();
-
-        Tile bestMove = null;
-        var bestHeuristic = board.isBlackMove() ? -INF : INF;
-        Comparator<Float> comparator = board.isBlackMove() ? Float::compare : (m1, m2) -> Float.compare(m2, m1);
+        ttHits = 0;
+        ttMisses = 0;
+        this.stopTime = stopTime;
+        this.hardStopTime = startTime + (long) maxTime * HARD_STOP_FACTOR;
+        stopped = false;
+        ordering.startSearch();
+
+        var rootBoard = OthelloBoard.from(board);
+        var maximizer = rootBoard.isBlackMove();
+        accumulator.reset(rootBoard);
+
+        // the first iteration has no scores to order by, so the root moves start in square priority order
+        var solvedMask = 0L;
+        var solvedBest = maximizer ? -INF : INF;
+        for (var i = 0; i < solved.moves().length; i++) {
+            solvedMask |= 1L << solved.moves()[i];
+            solvedBest = maximizer ? Math.max(solvedBest, solved.scores()[i]) : Math.min(solvedBest, solved.scores()[i]);
+        }
+        var moves = findRootMoves(rootBoard, solvedMask);
+        var moveCount = moves.length;
+        var scores = new int[moveCount];
 
-        // call the iterative deepening negamax to calculate the heuristic for each potential move and determine the best one
-        for (var move : moves) {
-            var child = board.makeMoved(move);
+        var depthOffset = perturbation & 1;
+        var rotation = perturbation / 2;
 
-            var heuristic = evaluateLoop(child, maxDepth - 1);
-//            var heuristic = evaluate(child, maxDepth - 1);
+        List<Tile.Move> rankedMoves = new ArrayList<>();
+        var depthReached = 0;
+        for (var iteration = 1; iteration <= maxDepth && moveCount > 0; iteration++) {
+            var depth = iteration + depthOffset;
+            // the shallow iterations always finish, so there is a result even when the time limit is very short
+            canStop = depth > MIN_DEPTH;
+            rotateRootMoves(moves, scores, rotation);
+
+            var alpha = maximizer ? solvedBest : -INF;
+            var beta = maximizer ? INF : solvedBest;
+            for (var i = 0; i < moveCount; i++) {
+                var flips = makeMove(rootBoard, moves[i]);
+                nodesVisited++;
+                int heuristic;
+                if (algorithm == Algorithm.PVS) {
+                    // only the first move needs an exact score when ranking the best move
+                    heuristic = exactScores || i == 0 ?
+                        evaluateAspiration(rootBoard, depth - 1, depth > 1 ? scores[i] : 0) :
+                        evaluateNullWindow(rootBoard, 0, depth - 1, maximizer, alpha, beta);
+                } else {
+                    heuristic = exactScores ?
+                        evaluateLoop(rootBoard, depth - 1, -INF, INF) :
+                        evaluateLoop(rootBoard, depth - 1, alpha, beta);
+                }
+                unmakeMove(rootBoard, moves[i], flips);
 
-            if (comparator.compare(heuristic, bestHeuristic) > 0) {
-                bestMove = move;
-                bestHeuristic = heuristic;
+                if (stopped) {
+                    break;
+                }
+                scores[i] = heuristic;
+                if (maximizer) {
+                    alpha = Math.max(alpha, heuristic);
+                } else {
+                    beta = Math.min(beta, heuristic);
+                }
+            }
+            if (stopped) {
+                break;
             }
+
+            sortRootMoves(moves, scores, maximizer);
+            rankedMoves = rankSearchedMoves(solved, moves, scores, maximizer);
+            depthReached = depth;
         }
 
         var endTime = System.currentTimeMillis();
         var timeTaken = endTime - startTime;
 
-        LOGGER.info("Finished ai analysis, max_depth: {}, nodes_visited: {}, tt_hits: {}, tt_misses: {}, time_taken: {}ms",
-            maxDepth, nodesVisited, table.getHits(), table.getMisses(), timeTaken);
+        if (!isHelper) {
+            LOGGER.info("Finished ai analysis, algorithm: {}, max_depth: {}, depth_reached: {}, nodes_visited: {}, tt_hits: {}, tt_misses: {}, cutoff_rate: {}, first_move_cutoffs: {}, time_taken: {}ms",
+                algorithm, maxDepth, depthReached, nodesVisited, ttHits, ttMisses,
+                String.format("%.3f", ordering.getCutoffRate()), String.format("%.3f", ordering.getFirstMoveCutoffRate()), timeTaken);
+        }
 
-        table.clear();
-        return new Tile.Move(bestMove, bestHeuristic);
+        return rankedMoves;
     }
 
-    public float evaluateLoop(OthelloBoard board, int maxDepth) {
-        if (!stack.isEmpty()) {
-            stack.clear();
+    // rotates the moves after the first by the rotation, keeping each move's score with it
+    private static void rotateRootMoves(int[] moves, int[] scores, int rotation) {
+        var count = moves.length - 1;
+        if (count < 2 || rotation % count == 0) {
+            return;
+        }
+        var shift = rotation % count;
+        var rotatedMoves = new int[count];
+        var rotatedScores = new int[count];
+        for (var i = 0; i < count; i++) {
+            rotatedMoves[i] = moves[1 + (i + shift) % count];
+            rotatedScores[i] = scores[1 + (i + shift) % count];
         }
+        System.arraycopy(rotatedMoves, 0, moves, 1, count);
+        System.arraycopy(rotatedScores, 0, scores, 1, count);
+    }
+
+    // ranks the searched moves together with the solved ones, the solved moves go first so one that fixed the bound
+    // stays ahead of the searched moves that could only be shown to be no better
+    private static List<Tile.Move> rankSearchedMoves(SolvedMoves solved, int[] moves, int[] scores, boolean maximizer) {
+        var solvedCount = solved.moves().length;
+        var allMoves = new int[solvedCount + moves.length];
+        var allScores = new int[allMoves.length];
+        System.arraycopy(solved.moves(), 0, allMoves, 0, solvedCount);
+        System.arraycopy(solved.scores(), 0, allScores, 0, solvedCount);
+        System.arraycopy(moves, 0, allMoves, solvedCount, moves.length);
+        System.arraycopy(scores, 0, allScores, solvedCount, moves.length);
+        sortRootMoves(allMoves, allScores, maximizer);
+        return toRankedMoves(allMoves, allScores);
+    }
 
-        float heuristic = 0;
-        for (var depthLimit = 1; depthLimit < maxDepth; depthLimit++) {
-            heuristic = evaluateLoop(stack, OthelloBoard.from(board), depthLimit);
+    private static List<Tile.Move> toRankedMoves(int[] moves, int[] scores) {
+        List<Tile.Move> rankedMoves = new ArrayList<>();
+        for (var i = 0; i < moves.length; i++) {
+            rankedMoves.add(new Tile.Move(Tile.fromSquare(moves[i]), Score.toFloat(scores[i])));
         }
-        return heuristic;
+        return rankedMoves;
     }
 
-    public float evaluate(OthelloBoard board, int maxDepth) {
-        float heuristic = 0;
-        for (var depthLimit = 1; depthLimit < maxDepth; depthLimit++) {
-            heuristic = evaluate(OthelloBoard.from(board), depthLimit, -INF, INF);
+    private static int[] findRootMoves(OthelloBoard board) {
+        return findRootMoves(board, 0L);
+    }
+
+    // the legal moves that are not excluded, in square priority order
+    private static int[] findRootMoves(OthelloBoard board, long excluded) {
+        var legalMoves = board.findLegalMoves() & ~excluded;
+        var moves = new int[OthelloBoard.countMoves(legalMoves)];
+        var priorities = new int[moves.length];
+        for (var i = 0; i < moves.length; i++) {
+            moves[i] = OthelloBoard.firstMove(legalMoves);
+            legalMoves = OthelloBoard.removeFirstMove(legalMoves);
+            priorities[i] = MoveOrdering.squarePriority(moves[i]);
         }
-        return heuristic;
+        sortRootMoves(moves, priorities, true);
+        return moves;
+    }
+
+    // solves each root move exactly, when exact scores are not needed moves after the first are only tested against
+    // the best score so far, if the deadline passes first the moves solved until then are returned, incomplete
+    private SolvedMoves solveRoot(OthelloBoard board, boolean exactScores, long deadline) {
+        var startTime = System.currentTimeMillis();
+        if (solver == null) {
+            solver = new EndgameSolver();
+        }
+
+        var maximizer = board.isBlackMove();
+        var moves = findRootMoves(board);
+        var discScores = new int[moves.length];
+        var best = 0;
+        var solverNodes = 0L;
+        for (var i = 0; i < moves.length; i++) {
+            var child = board.makeMoved(moves[i]);
+            int score;
+            if (exactScores || i == 0) {
+                score = solver.solve(child, deadline);
+            } else {
+                // a null window around the best score only tells whether the move is better, and only then is it solved
+                score = maximizer ?
+                    solver.solve(child, best, best + 1, deadline) :
+                    solver.solve(child, best - 1, best, deadline);
+                if (score != EndgameSolver.NOT_SOLVED && (maximizer ? score > best : score < best)) {
+                    solverNodes += solver.getNodesVisited();
+                    score = solver.solve(child, deadline);
+                }
+            }
+            solverNodes += solver.getNodesVisited();
+            if (score == EndgameSolver.NOT_SOLVED) {
+                LOGGER.info("Abandoned endgame solve, empties: {}, solved_moves: {}, nodes_visited: {}",
+                    board.countEmpty(), i, solverNodes);
+                return toSolvedMoves(Arrays.copyOf(moves, i), Arrays.copyOf(discScores, i), maximizer, false);
+            }
+            discScores[i] = score;
+            if (i == 0 || (maximizer ? score > best : score < best)) {
+                best = score;
+            }
+        }
+
+        nodesVisited = (int) Math.min(solverNodes, Integer.MAX_VALUE);
+        LOGGER.info("Finished endgame solve, empties: {}, nodes_visited: {}, time_taken: {}ms",
+            board.countEmpty(), solverNodes, System.currentTimeMillis() - startTime);
+        return toSolvedMoves(moves, discScores, maximizer, true);
+    }
+
+    private static SolvedMoves toSolvedMoves(int[] moves, int[] discScores, boolean maximizer, boolean complete) {
+        var scores = new int[moves.length];
+        for (var i = 0; i < moves.length; i++) {
+            scores[i] = Score.exact(discScores[i]);
+        }
+        sortRootMoves(moves, scores, maximizer);
+        return new SolvedMoves(moves, scores, complete);
+    }
+
+    // insertion sort of the moves by score, best first for the side to move, keeping the order of equal scores
+    private static void sortRootMoves(int[] moves, int[] scores, boolean maximizer) {
+        for (var i = 1; i < moves.length; i++) {
+            var move = moves[i];
+            var score = scores[i];
+            var j = i - 1;
+            while (j >= 0 && (maximizer ? scores[j] < score : scores[j] > score)) {
+                moves[j + 1] = moves[j];
+                scores[j + 1] = scores[j];
+                j--;
+            }
+            moves[j + 1] = move;
+            scores[j + 1] = score;
+        }
+    }
+
+    // checks the clock and whether the search was stopped or its thread interrupted every thousand nodes, once the
+    // search is stopped the current iteration is abandoned and the last finished iteration is the result
+    private boolean checkStopped() {
+        if (!stopped && (nodesVisited & STOP_CHECK_MASK) == 0 && (stopRequested || Thread.currentThread().isInterrupted())) {
+            stopped = true;
+        }
+        if (!stopped && (nodesVisited & STOP_CHECK_MASK) == 0) {
+            var time = System.currentTimeMillis();
+            stopped = canStop && time > stopTime || time > hardStopTime;
+        }
+        return stopped;
     }
 
     static class StackFrame {
 
-        OthelloBoard board;
         int depth;
-        float alpha;
-        float beta;
+        int alpha;
+        int beta;
+        // the window the node was searched with, to find the bound of the score stored in the tt table
+        int initialAlpha;
+        int initialBeta;
         long hashKey;
-        List<OthelloBoard> children = null;
-        int index = 0;
-
-        public StackFrame(OthelloBoard board, int depth, float alpha, float beta) {
-            this.board = board;
+        // moves of the node with their ordering scores, the first moveIndex of them have been searched
+        final int[] moves = new int[64];
+        final int[] moveScores = new int[64];
+        int moveCount;
+        int moveIndex;
+        boolean expanded;
+        // whether the turn was skipped to expand this node, so it can be restored when the frame is popped
+        boolean passed;
+        // the child move currently being searched and the discs it flipped
+        int move;
+        long flips;
+        // the best child move so far, stored with the node in the tt table so it is searched first next time
+        int bestMove;
+
+        public void reset(int depth, int alpha, int beta) {
             this.depth = depth;
             this.alpha = alpha;
             this.beta = beta;
+            this.initialAlpha = alpha;
+            this.initialBeta = beta;
+            this.moveCount = 0;
+            this.moveIndex = 0;
+            this.expanded = false;
+            this.passed = false;
+            this.bestMove = MoveOrdering.NO_MOVE;
         }
 
-        public OthelloBoard nextBoard() {
-            var board = children.get(index);
-            children.set(index, null);
-            index++;
-            return board;
+        public void orderMoves(MoveOrdering ordering, long legalMoves, int ttMove, int ply) {
+            moveCount = ordering.orderMoves(legalMoves, ttMove, ply, moves, moveScores);
+            moveIndex = 0;
         }
 
         public boolean hasNext() {
-            return index < children.size();
+            return moveIndex < moveCount;
+        }
+
+        // picks the next move in order without making it
+        public int nextMove() {
+            move = MoveOrdering.nextMove(moves, moveScores, moveIndex, moveCount);
+            moveIndex++;
+            return move;
+        }
+
+        // the position of the current move in the search order
+        public int currentIndex() {
+            return moveIndex - 1;
+        }
+    }
+
+    // every move of a search is made and unmade through these, so the accumulator follows the board
+    private long makeMove(OthelloBoard board, int move) {
+        var blackMoved = board.isBlackMove();
+        var flips = board.makeMove(move);
+        accumulator.makeMove(move, flips, blackMoved);
+        return flips;
+    }
+
+    private void unmakeMove(OthelloBoard board, int move, long flips) {
+        board.unmakeMove(move, flips);
+        accumulator.unmakeMove(move, flips, board.isBlackMove());
+    }
+
+    // frames are preallocated by ply and reused between searches, so walking the tree does not allocate
+    private StackFrame pushFrame(int ply, int depth, int alpha, int beta) {
+        if (ply >= frames.length) {
+            frames = Arrays.copyOf(frames, ply + 1);
+        }
+        if (frames[ply] == null) {
+            frames[ply] = new StackFrame();
         }
+        var frame = frames[ply];
+        frame.reset(depth, alpha, beta);
+        return frame;
+    }
 
-        public boolean hasChildren() {
-            return children != null;
+    // pops the frame at ply, restoring the board state to the parent frame, and returns the parent's ply
+    private int popFrame(OthelloBoard board, int ply) {
+        var frame = frames[ply];
+        if (frame.passed) {
+            board.skipTurn();
+        }
+        ply--;
+        if (ply >= 0) {
+            var parent = frames[ply];
+            unmakeMove(board, parent.move, parent.flips);
         }
+        return ply;
     }
 
-    private float evaluateLoop(Deque<StackFrame> stack, OthelloBoard initialBoard, int startDepth) {
-        stack.push(new StackFrame(initialBoard, startDepth, -INF, INF));
+    private void pushChild(OthelloBoard board, int ply) {
+        var frame = frames[ply];
+        // the frame keeps the flips to unmake the move when the child is popped
+        frame.flips = makeMove(board, frame.nextMove());
+        nodesVisited++;
+        pushFrame(ply + 1, frame.depth - 1, frame.alpha, frame.beta);
+    }
+
+    // searches the board in place, the board is restored to its original state before returning
+    public int evaluateLoop(OthelloBoard board, int startDepth, int startAlpha, int startBeta) {
+        accumulator.reset(board);
+        pushFrame(0, startDepth, startAlpha, startBeta);
+
+        var heuristic = 0;
+        var ply = 0;
+        while (ply >= 0) {
+            var frame = frames[ply];
 
-        var heuristic = 0.0f;
-        while (!stack.isEmpty()) {
-            var frame = stack.peek();
-            var currBoard = frame.board;
+            // unwind the whole stack when the search is stopped, the result is discarded by the caller
+            if (checkStopped()) {
+                while (ply >= 0) {
+                    ply = popFrame(board, ply);
+                }
+                return 0;
+            }
 
-            if (!frame.hasChildren()) {
-                if (frame.depth == 0 || (frame.depth >= MIN_DEPTH && System.currentTimeMillis() > stopTime)) {
-                    heuristic = findHeuristic(currBoard);
-                    stack.pop();
+            if (!frame.expanded) {
+                if (frame.depth == 0) {
+                    heuristic = accumulator.evaluate(board);
+                    ply = popFrame(board, ply);
                     continue;
                 }
 
-                var moves = currBoard.findPotentialMoves();
+                var moves = board.findLegalMoves();
 
                 // stop when we cannot expand node's children
-                if (moves.isEmpty()) {
-                    currBoard.skipTurn();
-                    moves = currBoard.findPotentialMoves();
-                    if (moves.isEmpty()) {
-                        heuristic = findHeuristic(currBoard);
-                        stack.pop();
+                if (moves == 0) {
+                    board.skipTurn();
+                    frame.passed = true;
+                    moves = board.findLegalMoves();
+                    if (moves == 0) {
+                        heuristic = findFinalScore(board);
+                        ply = popFrame(board, ply);
                         continue;
                     }
                 }
 
-                var hashKey = table.hash(currBoard);
+                var hashKey = table.hash(board);
 
                 // check tt table to see if we have a cache hit
-                var node = table.get(hashKey);
-                if (node != null && node.depth() >= frame.depth) {
-                    heuristic = node.heuristic();
-                    stack.pop();
+                var entry = probeTable(hashKey);
+                if (isUsable(entry, frame.depth, frame.alpha, frame.beta)) {
+                    heuristic = TTable.score(entry);
+                    ply = popFrame(board, ply);
                     continue;
                 }
 
-                List<OthelloBoard> children = new ArrayList<>();
-                for (var move : moves) {
-                    var child = currBoard.makeMoved(move);
-                    nodesVisited++;
-                    children.add(child);
-                }
-
-                if (!children.isEmpty()) {
-                    frame.children = children;
-                    frame.hashKey = hashKey;
+                frame.expanded = true;
+                frame.hashKey = hashKey;
+                frame.orderMoves(ordering, moves, entry != TTable.MISS ? TTable.bestMove(entry) : MoveOrdering.NO_MOVE, ply);
 
-                    stack.push(new StackFrame(frame.nextBoard(), frame.depth - 1, frame.alpha, frame.beta));
-                } else {
-                    if (currBoard.isBlackMove()) {
-                        table.put(new TTable.Node(frame.hashKey, frame.alpha, frame.depth));
-                        heuristic = frame.alpha;
-                        stack.pop();
-                    } else {
-                        table.put(new TTable.Node(frame.hashKey, frame.beta, frame.depth));
-                        heuristic = frame.beta;
-                        stack.pop();
-                    }
-                }
+                pushChild(board, ply);
+                ply++;
             } else {
                 var doPrune = false;
 
-                if (currBoard.isBlackMove()) {
+                if (board.isBlackMove()) {
+                    if (frame.bestMove == MoveOrdering.NO_MOVE || heuristic > frame.alpha) {
+                        frame.bestMove = frame.move;
+                    }
                     frame.alpha = Math.max(frame.alpha, heuristic);
                     if (frame.alpha >= frame.beta) {
                         doPrune = true;
+                        ordering.onCutoff(frame.move, ply, frame.depth, frame.currentIndex());
                     }
 
                     if (frame.hasNext() && !doPrune) {
-                        stack.push(new StackFrame(frame.nextBoard(), frame.depth - 1, frame.alpha, frame.beta));
+                        pushChild(board, ply);
+                        ply++;
                     } else {
-                        table.put(new TTable.Node(frame.hashKey, frame.alpha, frame.depth));
+                        storeFrame(frame, frame.alpha);
                         heuristic = frame.alpha;
-                        stack.pop();
+                        ply = popFrame(board, ply);
                     }
                 } else {
+                    if (frame.bestMove == MoveOrdering.NO_MOVE || heuristic < frame.beta) {
+                        frame.bestMove = frame.move;
+                    }
                     frame.beta = Math.min(frame.beta, heuristic);
                     if (frame.beta <= frame.alpha) {
                         doPrune = true;
+                        ordering.onCutoff(frame.move, ply, frame.depth, frame.currentIndex());
                     }
 
                     if (frame.hasNext() && !doPrune) {
-                        stack.push(new StackFrame(frame.nextBoard(), frame.depth - 1, frame.alpha, frame.beta));
+                        pushChild(board, ply);
+                        ply++;
                     } else {
-                        table.put(new TTable.Node(frame.hashKey, frame.beta, frame.depth));
+                        storeFrame(frame, frame.beta);
                         heuristic = frame.beta;
-                        stack.pop();
+                        ply = popFrame(board, ply);
                     }
                 }
             }
@@ -252,140 +668,294 @@ public final class OthelloAgent {
         return heuristic;
     }
 
-    public float evaluate(OthelloBoard board, int depth, float alpha, float beta) {
-        // stop early when we reach depth floor, or we've gone over time
-        if (depth == 0 || (depth >= MIN_DEPTH && System.currentTimeMillis() > stopTime)) {
-            return findHeuristic(board);
+    // searches in a window around the expected score, widening the side that failed until the score falls inside it
+    private int evaluateAspiration(OthelloBoard board, int depth, int expected) {
+        var delta = ASPIRATION_WINDOW;
+        var lower = expected - delta;
+        var upper = expected + delta;
+        while (true) {
+            var heuristic = evaluatePvs(board, 0, depth, lower, upper);
+            if (stopped) {
+                return heuristic;
+            }
+            if (heuristic <= lower && lower > -INF) {
+                delta *= 2;
+                lower = widen(expected, -delta);
+            } else if (heuristic >= upper && upper < INF) {
+                delta *= 2;
+                upper = widen(expected, delta);
+            } else {
+                return heuristic;
+            }
+        }
+    }
+
+    private static int widen(int expected, int delta) {
+        // give up on the window once it is wider than any heuristic value
+        if (Math.abs(delta) > Score.MAX_HEURISTIC) {
+            return delta > 0 ? INF : -INF;
+        }
+        return expected + delta;
+    }
+
+    // tests whether the board can beat the best score so far with a null window, and only searches for the
+    // exact score when it lands inside the window, otherwise the bound is returned, a null window caller already
+    // has its answer from the test
+    private int evaluateNullWindow(OthelloBoard board, int ply, int depth, boolean maximizer, int alpha, int beta) {
+        if (maximizer) {
+            var heuristic = evaluatePvs(board, ply, depth, alpha, alpha + 1);
+            if (heuristic > alpha && heuristic < beta && !stopped) {
+                heuristic = evaluatePvs(board, ply, depth, alpha, beta);
+            }
+            return heuristic;
+        } else {
+            var heuristic = evaluatePvs(board, ply, depth, beta - 1, beta);
+            if (heuristic < beta && heuristic > alpha && !stopped) {
+                heuristic = evaluatePvs(board, ply, depth, alpha, beta);
+            }
+            return heuristic;
+        }
+    }
+
+    // searches the board in place, the board is restored to its original state before returning
+    public int evaluatePvs(OthelloBoard board, int depth, int alpha, int beta) {
+        accumulator.reset(board);
+        return evaluatePvs(board, 0, depth, alpha, beta);
+    }
+
+    private int evaluatePvs(OthelloBoard board, int ply, int depth, int alpha, int beta) {
+        if (depth == 0 || checkStopped()) {
+            return accumulator.evaluate(board);
         }
 
-        var moves = board.findPotentialMoves();
+        var moves = board.findLegalMoves();
 
-        // stop when we cannot expand node's children
-        if (moves.isEmpty()) {
+        // skip the turn when we cannot expand node's children, the skip is restored before we return
+        var passed = moves == 0;
+        if (passed) {
             board.skipTurn();
-            moves = board.findPotentialMoves();
-            if (moves.isEmpty()) {
-                return findHeuristic(board);
-            }
+            moves = board.findLegalMoves();
         }
 
+        var heuristic = moves == 0 ? findFinalScore(board) : evaluatePvsMoves(board, moves, ply, depth, alpha, beta);
+
+        if (passed) {
+            board.skipTurn();
+        }
+        return heuristic;
+    }
+
+    private int evaluatePvsMoves(OthelloBoard board, long moves, int ply, int depth, int alpha, int beta) {
         var hashKey = table.hash(board);
 
         // check tt table to see if we have a cache hit
-        var node = table.get(hashKey);
-        if (node != null && node.depth() >= depth) {
-            return node.heuristic();
+        var entry = probeTable(hashKey);
+        if (isUsable(entry, depth, alpha, beta)) {
+            return TTable.score(entry);
         }
 
-        List<OthelloBoard> children = new ArrayList<>();
-        for (var move : moves) {
-            var child = board.makeMoved(move);
-            nodesVisited++;
-            children.add(child);
-        }
+        var initialAlpha = alpha;
+        var initialBeta = beta;
+
+        // the frame at the ply only provides the move buffers, the recursion keeps the rest of the state
+        var frame = pushFrame(ply, depth, alpha, beta);
+        frame.orderMoves(ordering, moves, entry != TTable.MISS ? TTable.bestMove(entry) : MoveOrdering.NO_MOVE, ply);
 
         // black is the maximizer and white is the minimizer
-        if (board.isBlackMove()) {
-            for (var child : children) {
-                alpha = Math.max(alpha, evaluate(child, depth - 1, alpha, beta));
-                if (alpha >= beta) {
-                    break;
-                }
+        var maximizer = board.isBlackMove();
+        var bestMove = MoveOrdering.NO_MOVE;
+        while (frame.hasNext()) {
+            var move = frame.nextMove();
+            var index = frame.currentIndex();
+            var flips = makeMove(board, move);
+            nodesVisited++;
+
+            var heuristic = index == 0 ?
+                evaluatePvs(board, ply + 1, depth - 1, alpha, beta) :
+                evaluateNullWindow(board, ply + 1, depth - 1, maximizer, alpha, beta);
+            unmakeMove(board, move, flips);
+
+            // the child's score is meaningless once the search is stopped, so it must not reach the window, the
+            // table or the ordering, the caller discards this node's score too
+            if (stopped) {
+                break;
             }
-            table.put(new TTable.Node(hashKey, alpha, depth));
-            return alpha;
-        } else {
-            for (var child : children) {
-                beta = Math.min(beta, evaluate(child, depth - 1, alpha, beta));
-                if (beta <= alpha) {
-                    break;
+
+            if (maximizer) {
+                if (bestMove == MoveOrdering.NO_MOVE || heuristic > alpha) {
+                    bestMove = move;
+                }
+                alpha = Math.max(alpha, heuristic);
+            } else {
+                if (bestMove == MoveOrdering.NO_MOVE || heuristic < beta) {
+                    bestMove = move;
                 }
+                beta = Math.min(beta, heuristic);
             }
-            table.put(new TTable.Node(hashKey, beta, depth));
-            return beta;
+            if (alpha >= beta) {
+                ordering.onCutoff(move, ply, depth, index);
+                break;
+            }
+        }
+
+        var heuristic = maximizer ? alpha : beta;
+        if (!stopped) {
+            table.store(hashKey, heuristic, depth, findBound(heuristic, initialAlpha, initialBeta), bestMove);
         }
+        return heuristic;
     }
 
-    private float findHeuristic(float blackScore, float whiteScore) {
-        return (blackScore - whiteScore) / (blackScore + whiteScore);
+    private long probeTable(long hashKey) {
+        var entry = table.probe(hashKey);
+        if (entry != TTable.MISS) {
+            ttHits++;
+        } else {
+            ttMisses++;
+        }
+        return entry;
     }
 
-    public float findHeuristic(OthelloBoard board) {
-        return
-            50f * findParityHeuristic(board)
-                + 100f * findCornerHeuristic(board)
-                + 100f * findMobilityHeuristic(board)
-                + 50f * findXcHeuristic(board)
-                + 100f * findStabilityHeuristic(board);
-    }
-
-    private float findParityHeuristic(OthelloBoard board) {
-        var whiteScore = 0f;
-        var blackScore = 0f;
-        for (var row = 0; row < OthelloBoard.getBoardSize(); row++) {
-            for (var col = 0; col < OthelloBoard.getBoardSize(); col++) {
-                if (board.getSquare(row, col) == OthelloBoard.WHITE) {
-                    whiteScore++;
-                }
-                if (board.getSquare(row, col) == OthelloBoard.BLACK) {
-                    blackScore++;
-                }
-            }
+    private void storeFrame(StackFrame frame, int heuristic) {
+        table.store(frame.hashKey, heuristic, frame.depth, findBound(heuristic, frame.initialAlpha, frame.initialBeta), frame.bestMove);
+    }
+
+    // scores at or outside the window are only bounds: a node that failed high is worth at least the score,
+    // and a node that failed low at most the score
+    private static int findBound(int heuristic, int alpha, int beta) {
+        if (heuristic >= beta) {
+            return TTable.LOWER;
+        }
+        if (heuristic <= alpha) {
+            return TTable.UPPER;
         }
-        return findHeuristic(blackScore, whiteScore);
+        return TTable.EXACT;
     }
 
-    private float findTilesHeuristic(OthelloBoard board, int[][] tiles) {
-        float whiteTiles = 0;
-        float blackTiles = 0;
-        // iterate over corners and calculate the number of white and black corners
-        for (var tile : tiles) {
-            var currentColor = board.getSquare(tile[0], tile[1]);
-            if (currentColor == OthelloBoard.WHITE) {
-                whiteTiles++;
-            } else if (currentColor == OthelloBoard.BLACK) {
-                blackTiles++;
-            }
+    // checks whether a stored score is deep enough and its bound decides the result of searching the window
+    private static boolean isUsable(long entry, int depth, int alpha, int beta) {
+        if (entry == TTable.MISS || TTable.depth(entry) < depth) {
+            return false;
         }
-        if (blackTiles + whiteTiles == 0) {
-            return 0f;
+        var score = TTable.score(entry);
+        return switch (TTable.bound(entry)) {
+            case TTable.EXACT -> true;
+            case TTable.LOWER -> score >= beta;
+            case TTable.UPPER -> score <= alpha;
+            default -> false;
+        };
+    }
+
+    // the difference of the two counts over their sum, scaled to the weight of the component in score units
+    private static int findHeuristic(int blackScore, int whiteScore, int weight) {
+        var total = blackScore + whiteScore;
+        if (total == 0) {
+            return 0;
         }
-        return findHeuristic(blackTiles, whiteTiles);
+        return weight * Score.SCALE * (blackScore - whiteScore) / total;
     }
 
-    private float findCornerHeuristic(OthelloBoard board) {
-        return findTilesHeuristic(board, CORNERS);
+    // the exact score of a board where neither side can move, so a line that ends the game is never mistaken for
+    // an estimate, a won game ranks above every heuristic score and a lost one below
+    public static int findFinalScore(OthelloBoard board) {
+        return Score.exact(board.countDiscs(OthelloBoard.BLACK) - board.countDiscs(OthelloBoard.WHITE));
     }
 
-    private float findXcHeuristic(OthelloBoard board) {
-        return findTilesHeuristic(board, XC_SQUARES);
+    public static int findHeuristic(OthelloBoard board) {
+        return
+            findParityHeuristic(board, 50)
+                + findCornerHeuristic(board, 100)
+                + findMobilityHeuristic(board, 100)
+                + findXcHeuristic(board, 50)
+                + findStabilityHeuristic(board, 100);
     }
 
-    private float findMobilityHeuristic(OthelloBoard board) {
-        float whiteMoves = board.countPotentialMoves(OthelloBoard.WHITE);
-        float blackMoves = board.countPotentialMoves(OthelloBoard.BLACK);
-        if (whiteMoves + blackMoves == 0) {
-            return 0f;
+    private static long toMask(int[][] tiles) {
+        var mask = 0L;
+        for (var tile : tiles) {
+            mask |= 1L << (tile[0] * OthelloBoard.getBoardSize() + tile[1]);
         }
-        return findHeuristic(blackMoves, whiteMoves);
+        return mask;
+    }
+
+    private static int findParityHeuristic(OthelloBoard board, int weight) {
+        var whiteScore = board.countDiscs(OthelloBoard.WHITE);
+        var blackScore = board.countDiscs(OthelloBoard.BLACK);
+        return findHeuristic(blackScore, whiteScore, weight);
+    }
+
+    private static int findTilesHeuristic(OthelloBoard board, long tiles, int weight) {
+        // count the white and black discs that are on the given squares
+        var whiteTiles = Long.bitCount(board.getDiscs(OthelloBoard.WHITE) & tiles);
+        var blackTiles = Long.bitCount(board.getDiscs(OthelloBoard.BLACK) & tiles);
+        return findHeuristic(blackTiles, whiteTiles, weight);
+    }
+
+    private static int findCornerHeuristic(OthelloBoard board, int weight) {
+        return findTilesHeuristic(board, CORNERS_MASK, weight);
+    }
+
+    private static int findXcHeuristic(OthelloBoard board, int weight) {
+        return findTilesHeuristic(board, XC_SQUARES_MASK, weight);
+    }
+
+    private static int findMobilityHeuristic(OthelloBoard board, int weight) {
+        var whiteMoves = board.countPotentialMoves(OthelloBoard.WHITE);
+        var blackMoves = board.countPotentialMoves(OthelloBoard.BLACK);
+        return findHeuristic(blackMoves, whiteMoves, weight);
     }
 
-    private float findStabilityHeuristic(OthelloBoard board) {
-        return 0f;
+    private static int findStabilityHeuristic(OthelloBoard board, int weight) {
+        var blackStable = Long.bitCount(Stability.findStable(board, OthelloBoard.BLACK));
+        var whiteStable = Long.bitCount(Stability.findStable(board, OthelloBoard.WHITE));
+        return findHeuristic(blackStable, whiteStable, weight);
     }
 
+    // usage: OthelloAgent [depth] [moves] [threads], plays out a game comparing the nodes each algorithm searches per
+    // move and the time it takes, once for each power of two threads up to the given count, so the lazy smp speedup
+    // shows as the total time falling as threads are added
     public static void main(String[] args) {
-        var startTime = System.currentTimeMillis();
+        var depth = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        var moveCount = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        var maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        var helperExecutor = Executors.newFixedThreadPool(Math.max(maxThreads - 1, 1));
+
+        for (var threads = 1; threads <= maxThreads; threads *= 2) {
+            var totalNodes = new long[Algorithm.values().length];
+            var totalTime = new long[Algorithm.values().length];
+
+            // the agents are kept between moves so their tables carry over like they do in a game
+            var agents = new OthelloAgent[Algorithm.values().length];
+            for (var algorithm : Algorithm.values()) {
+                agents[algorithm.ordinal()] = new OthelloAgent(DEFAULT_TT_SIZE_MB, Integer.MAX_VALUE, algorithm);
+                agents[algorithm.ordinal()].setHelperExecutor(helperExecutor);
+            }
 
-        var board = OthelloBoard.initial();
-        for (var j = 0; j < 10; j++) {
-            var agent = new OthelloAgent();
-            var bestMove = agent.findBestMove(board, 8);
-            System.out.println(bestMove);
-            board = board.makeMoved(bestMove.tile());
-        }
+            var board = OthelloBoard.initial();
+            for (var j = 0; j < moveCount && board.findLegalMoves() != 0; j++) {
+                Tile.Move bestMove = null;
+                for (var algorithm : Algorithm.values()) {
+                    var agent = agents[algorithm.ordinal()];
 
-        var endTime = System.currentTimeMillis();
-        System.out.println("Total execution time: " + (endTime - startTime) + " ms");
+                    var startTime = System.currentTimeMillis();
+                    var move = agent.findBestMove(board, depth, threads);
+                    totalTime[algorithm.ordinal()] += System.currentTimeMillis() - startTime;
+                    totalNodes[algorithm.ordinal()] += agent.getNodesVisited();
+
+                    System.out.println(algorithm + ": " + move + ", nodes: " + agent.getNodesVisited());
+                    bestMove = move;
+                }
+
+                board.makeMove(bestMove.tile());
+                if (board.findLegalMoves() == 0) {
+                    board.skipTurn();
+                }
+            }
+
+            for (var algorithm : Algorithm.values()) {
+                System.out.println(algorithm + " threads: " + threads + ", total nodes: " + totalNodes[algorithm.ordinal()]
+                    + ", total time: " + totalTime[algorithm.ordinal()] + " ms");
+            }
+        }
+        helperExecutor.shutdown();
     }
 }
@@ -9,36 +9,53 @@ import lombok.Getter;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 import java.util.function.Consumer;
 
 @EqualsAndHashCode
 public class OthelloBoard {
 
     private static final int BOARD_SIZE = 8;
-    private static final int HALF_SIZE = BOARD_SIZE / 2;
     public static final byte EMPTY = 0;
     public static final byte WHITE = 1;
     public static final byte BLACK = 2;
-    private static final int[][] DIRECTIONS = {{0, 1}, {0, -1}, {1, 0}, {-1, 0}, {-1, -1}, {-1, 1}, {1, -1}, {1, 1}};
-    private static final List<Tile> TILES = tiles();
-
-    private long boardA;
-    private long boardB;
+    private static final long NOT_A_FILE = 0xfefefefefefefefeL;
+    private static final long NOT_H_FILE = 0x7f7f7f7f7f7f7f7fL;
+    // each direction is a bit shift on the square index (row * 8 + col) and a mask that removes squares that wrapped
+    // around the edge of the board, in order: east, west, south, north, south-east, south-west, north-east, north-west
+    static final int[] SHIFTS = {1, -1, 8, -8, 9, 7, -7, -9};
+    static final long[] SHIFT_MASKS = {NOT_A_FILE, NOT_H_FILE, -1L, -1L, NOT_A_FILE, NOT_H_FILE, NOT_A_FILE, NOT_H_FILE};
+
+    // one occupancy mask per color, bit (row * 8 + col) is set when the color has a disc on the square
+    private long blackDiscs;
+    private long whiteDiscs;
     @Getter
     private boolean blackMove;
+    // zobrist key of the discs and side to move, kept up to date by every method that changes the board
+    @Getter
+    @EqualsAndHashCode.Exclude
+    private long hashKey;
 
-    private OthelloBoard(long boardA, long boardB, boolean blackMove) {
-        this.boardA = boardA;
-        this.boardB = boardB;
+    private OthelloBoard(long blackDiscs, long whiteDiscs, boolean blackMove, long hashKey) {
+        this.blackDiscs = blackDiscs;
+        this.whiteDiscs = whiteDiscs;
         this.blackMove = blackMove;
+        this.hashKey = hashKey;
     }
 
     public OthelloBoard(boolean blackMove) {
-        this.blackMove = blackMove;
+        this(0L, 0L, blackMove, Zobrist.hash(0L, 0L, blackMove));
+    }
+
+    public static OthelloBoard of(long blackDiscs, long whiteDiscs, boolean blackMove) {
+        if ((blackDiscs & whiteDiscs) != 0) {
+            throw new IllegalArgumentException("Black and white discs cannot share a square");
+        }
+        return new OthelloBoard(blackDiscs, whiteDiscs, blackMove, Zobrist.hash(blackDiscs, whiteDiscs, blackMove));
     }
 
     public static OthelloBoard from(OthelloBoard board) {
-        return new OthelloBoard(board.boardA, board.boardB, board.blackMove);
+        return new OthelloBoard(board.blackDiscs, board.whiteDiscs, board.blackMove, board.hashKey);
     }
 
     public static OthelloBoard initial() {
@@ -77,15 +94,111 @@ public class OthelloBoard {
     }
 
     public int countDiscs(byte color) {
-        var discs = 0;
-        // iterate through each square and find the discs
-        for (var tile : TILES) {
-            var c = getSquare(tile);
-            if (c == color) {
-                discs++;
+        return Long.bitCount(getDiscs(color));
+    }
+
+    public int countEmpty() {
+        return Long.bitCount(getEmpty());
+    }
+
+    public long getEmpty() {
+        return ~(blackDiscs | whiteDiscs);
+    }
+
+    // finds every square adjacent to at least one of the discs in any of the 8 directions
+    private static long findNeighbours(long discs) {
+        var neighbours = 0L;
+        for (var direction = 0; direction < SHIFTS.length; direction++) {
+            neighbours |= shift(discs, direction);
+        }
+        return neighbours;
+    }
+
+    // frontier discs are discs of the color that are adjacent to at least one empty square
+    public int countFrontierDiscs(byte color) {
+        return Long.bitCount(getDiscs(color) & findNeighbours(getEmpty()));
+    }
+
+    // potential mobility is the number of empty squares adjacent to at least one opponent disc
+    public int countPotentialMobility(byte color) {
+        return Long.bitCount(getEmpty() & findNeighbours(getDiscs(color == BLACK ? WHITE : BLACK)));
+    }
+
+    public long getDiscs(byte color) {
+        return color == BLACK ? blackDiscs : whiteDiscs;
+    }
+
+    private static long shift(long discs, int direction) {
+        var amount = SHIFTS[direction];
+        var shifted = amount > 0 ? discs << amount : discs >>> -amount;
+        return shifted & SHIFT_MASKS[direction];
+    }
+
+    public long findLegalMoves() {
+        return findLegalMoves(blackMove ? BLACK : WHITE);
+    }
+
+    public long findLegalMoves(byte color) {
+        return findLegalMoves(getDiscs(color), getDiscs(color == BLACK ? WHITE : BLACK));
+    }
+
+    // finds every legal move for a color as a single mask, each direction is resolved for all discs at once
+    // using a kogge-stone occluded fill through the opponent's discs
+    public static long findLegalMoves(long own, long opponent) {
+        var empty = ~(own | opponent);
+
+        var moves = 0L;
+        for (var direction = 0; direction < SHIFTS.length; direction++) {
+            var amount = SHIFTS[direction];
+            var mask = SHIFT_MASKS[direction];
+
+            // propagators are opponent discs that cannot wrap around the edge in this direction
+            var pro = opponent & mask;
+            // generators start at opponent discs directly adjacent to one of our discs
+            var gen = shift(own, direction) & opponent;
+            if (amount > 0) {
+                gen |= pro & (gen << amount);
+                pro &= pro << amount;
+                gen |= pro & (gen << (amount * 2));
+                pro &= pro << (amount * 2);
+                gen |= pro & (gen << (amount * 4));
+            } else {
+                gen |= pro & (gen >>> -amount);
+                pro &= pro >>> -amount;
+                gen |= pro & (gen >>> (-amount * 2));
+                pro &= pro >>> (-amount * 2);
+                gen |= pro & (gen >>> (-amount * 4));
             }
+            // a move is an empty square directly after a run of opponent discs
+            moves |= shift(gen, direction) & empty;
+        }
+        return moves;
+    }
+
+    public boolean isLegalMove(Tile move) {
+        return inBounds(move.row(), move.col()) && (findLegalMoves() & (1L << move.square())) != 0;
+    }
+
+    // iteration helpers over a legal move mask, visiting squares from lowest to highest without allocating
+    // e.g. for (var moves = board.findLegalMoves(); moves != 0; moves = removeFirstMove(moves))
+    public static int firstMove(long moves) {
+        return Long.numberOfTrailingZeros(moves);
+    }
+
+    public static long removeFirstMove(long moves) {
+        return moves & (moves - 1);
+    }
+
+    public static int countMoves(long moves) {
+        return Long.bitCount(moves);
+    }
+
+    // one of the moves chosen uniformly at random, for random play in the trainers, benchmarks and tests
+    public static int randomMove(Random random, long moves) {
+        for (var skip = random.nextInt(countMoves(moves)); skip > 0; skip--) {
+            moves = removeFirstMove(moves);
         }
-        return discs;
+        return firstMove(moves);
     }
 
     public List<Tile> findPotentialMoves() {
@@ -99,43 +212,43 @@ public class OthelloBoard {
     }
 
     public void onPotentialMoves(byte color, Consumer<Tile> onMove) {
-        int oppositeColor = color == BLACK ? WHITE : BLACK;
+        // each set bit in the legal move mask is a distinct move
+        for (var moves = findLegalMoves(color); moves != 0; moves = removeFirstMove(moves)) {
+            onMove.accept(Tile.fromSquare(firstMove(moves)));
+        }
+    }
+
+    public int countPotentialMoves(byte color) {
+        return countMoves(findLegalMoves(color));
+    }
 
-        // check each tile for potential flanks
-        for (var disc : TILES) {
-            if (getSquare(disc) != color) {
-                // skip any discs of a different color
+    public OthelloBoard transformed(int transform) {
+        return of(Symmetry.transform(blackDiscs, transform), Symmetry.transform(whiteDiscs, transform), blackMove);
+    }
+
+    // finds the transform mapping this board to its canonical form, the symmetric board with the smallest disc masks
+    public int findCanonicalTransform() {
+        var bestTransform = Symmetry.IDENTITY;
+        var bestBlack = blackDiscs;
+        var bestWhite = whiteDiscs;
+        for (var transform = 1; transform < Symmetry.COUNT; transform++) {
+            var black = Symmetry.transform(blackDiscs, transform);
+            var compare = Long.compareUnsigned(black, bestBlack);
+            if (compare > 0) {
                 continue;
             }
-            // check each direction from tile for potential flank
-            for (var direction : DIRECTIONS) {
-                var row = disc.row() + direction[0];
-                var col = disc.col() + direction[1];
-
-                // iterate from tile to next opposite color
-                var count = 0;
-                while (inBounds(row, col)) {
-                    if (getSquare(row, col) != oppositeColor) {
-                        break;
-                    }
-                    row += direction[0];
-                    col += direction[1];
-                    count++;
-                }
-                // add move to potential moves list assuming
-                // we flank at least once tile, the tile is in bounds and is empty
-                if (count > 0 && inBounds(row, col) && getSquare(row, col) == EMPTY) {
-                    onMove.accept(new Tile(row, col));
-                }
+            var white = Symmetry.transform(whiteDiscs, transform);
+            if (compare < 0 || Long.compareUnsigned(white, bestWhite) < 0) {
+                bestTransform = transform;
+                bestBlack = black;
+                bestWhite = white;
             }
         }
-
+        return bestTransform;
     }
 
-    public int countPotentialMoves(byte color) {
-        int[] count = {0};
-        onPotentialMoves(color, (tile) -> ++count[0]);
-        return count[0];
+    public OthelloBoard canonical() {
+        return transformed(findCanonicalTransform());
     }
 
     public OthelloBoard skippedTurn() {
@@ -146,6 +259,7 @@ public class OthelloBoard {
 
     public void skipTurn() {
         blackMove = !blackMove;
+        hashKey ^= Zobrist.turnKey();
     }
 
     public OthelloBoard makeMoved(String move) {
@@ -153,82 +267,86 @@ public class OthelloBoard {
     }
 
     public OthelloBoard makeMoved(Tile move) {
+        return makeMoved(move.square());
+    }
+
+    public OthelloBoard makeMoved(int square) {
         var copiedBoard = OthelloBoard.from(this);
-        copiedBoard.makeMove(move);
+        copiedBoard.makeMove(square);
         return copiedBoard;
     }
 
-    // makes the move on the board, changing the state to a moved state
-    // only flips the turn if the next color has moves - otherwise it will be current color turn again
-    public void makeMove(Tile move) {
-        var oppositeColor = blackMove ? WHITE : BLACK;
-        var currentColor = blackMove ? BLACK : WHITE;
-
-        setSquare(move.row(), move.col(), currentColor);
-
-        // check each direction of new tile position
-        for (var direction : DIRECTIONS) {
-            var initialRow = move.row() + direction[0];
-            var initialCol = move.col() + direction[1];
-
-            var row = initialRow;
-            var col = initialCol;
-
-            var flank = false;
-
-            // iterate from tile until first potential flank
-            while (inBounds(row, col)) {
-                if (getSquare(row, col) == currentColor) {
-                    flank = true;
-                    break;
-                } else if (getSquare(row, col) == EMPTY) {
-                    break;
-                }
-                row += direction[0];
-                col += direction[1];
-            }
-
-            if (!flank) {
-                continue;
-            }
+    public long makeMove(Tile move) {
+        return makeMove(move.square());
+    }
 
-            row = initialRow;
-            col = initialCol;
+    // makes the move on the board, changing the state to a moved state
+    // returns the mask of flipped discs, which can be passed to unmakeMove to restore the previous state
+    public long makeMove(int square) {
+        var bit = 1L << square;
+        var own = blackMove ? blackDiscs : whiteDiscs;
+        var opponent = blackMove ? whiteDiscs : blackDiscs;
+
+        var flips = FlipTables.findFlips(square, own, opponent);
+
+        own |= bit | flips;
+        opponent &= ~flips;
+        if (blackMove) {
+            blackDiscs = own;
+            whiteDiscs = opponent;
+        } else {
+            whiteDiscs = own;
+            blackDiscs = opponent;
+        }
 
-            // flip each tile to opposite color to flank, update tile counts
-            while (inBounds(row, col)) {
-                if (getSquare(row, col) != oppositeColor) {
-                    break;
-                }
+        hashKey ^= Zobrist.moveKey(square, flips, blackMove) ^ Zobrist.turnKey();
+        blackMove = !blackMove;
+        return flips;
+    }
 
-                setSquare(row, col, currentColor);
+    // restores the state before a call to makeMove, given the square and the flip mask it returned
+    public void unmakeMove(int square, long flips) {
+        blackMove = !blackMove;
+        hashKey ^= Zobrist.moveKey(square, flips, blackMove) ^ Zobrist.turnKey();
 
-                row += direction[0];
-                col += direction[1];
-            }
+        var bit = 1L << square;
+        if (blackMove) {
+            blackDiscs &= ~(bit | flips);
+            whiteDiscs |= flips;
+        } else {
+            whiteDiscs &= ~(bit | flips);
+            blackDiscs |= flips;
         }
-
-        blackMove = !blackMove;
     }
 
     public void setSquare(int row, int col, byte color) {
-        // calculate bit position
-        var p = ((row < HALF_SIZE ? row : row - HALF_SIZE) * getBoardSize() + col) * 2;
-        var clearMask = ~(1L << p) & ~(1L << (p + 1));
-        // clear bits then set bits
-        if (row < HALF_SIZE) {
-            boardA &= clearMask;
-            boardA |= (long) color << p;
-        } else {
-            boardB &= clearMask;
-            boardB |= (long) color << p;
+        var square = row * getBoardSize() + col;
+        var bit = 1L << square;
+        // clear the square from both colors then set it for the new color
+        var previous = getSquare(square);
+        if (previous != EMPTY) {
+            hashKey ^= Zobrist.squareKey(square, previous == BLACK);
+        }
+        blackDiscs &= ~bit;
+        whiteDiscs &= ~bit;
+        if (color == BLACK) {
+            blackDiscs |= bit;
+        } else if (color == WHITE) {
+            whiteDiscs |= bit;
+        }
+        if (color != EMPTY) {
+            hashKey ^= Zobrist.squareKey(square, color == BLACK);
         }
     }
 
     public byte getSquare(int row, int col) {
-        var mask = (1 << 2) - 1;
-        var p = ((row < HALF_SIZE ? row : row - HALF_SIZE) * getBoardSize() + col) * 2;
-        return row < HALF_SIZE ? (byte) (mask & (boardA >> p)) : (byte) (mask & (boardB >> p));
+        var bit = 1L << (row * getBoardSize() + col);
+        if ((blackDiscs & bit) != 0) {
+            return BLACK;
+        } else if ((whiteDiscs & bit) != 0) {
+            return WHITE;
+        }
+        return EMPTY;
     }
 
     public void setSquare(String square, byte color) {
@@ -0,0 +1,376 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package engine;
+
+import javax.annotation.Nullable;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+// scores a board as the sum of the weights of the patterns on it, each pattern is a line or block of squares and its
+// weight is looked up by the colors on those squares, read as a base 3 number (0 empty, 1 black, 2 white)
+// each pattern is read in all of its places on the board by reading it from the board in each symmetry, the places
+// share one table, and there is one set of tables per phase of the game as the value of a shape changes as it fills
+public final class PatternEvaluator implements Evaluator {
+
+    public static final String DEFAULT_WEIGHTS = "/weights/patterns.bin.gz";
+    public static final int PHASES = 8;
+    private static final int EMPTIES_PER_PHASE = 8;
+    // weights are stored in fixed point with this many units per disc, the same units as a score
+    public static final int WEIGHT_SCALE = Score.SCALE;
+
+    // the binary format: magic, version, phases and pattern sizes, then the tables of each phase as big-endian shorts
+    private static final int MAGIC = 0x4f505457;
+    private static final int VERSION = 1;
+
+    static final int EDGE_2X = 0;
+    static final int CORNER_3X3 = 1;
+    static final int CORNER_2X5 = 2;
+    static final int ROW_2 = 3;
+    static final int ROW_3 = 4;
+    static final int ROW_4 = 5;
+    static final int DIAG_8 = 6;
+    static final int DIAG_7 = 7;
+    static final int DIAG_6 = 8;
+    static final int DIAG_5 = 9;
+    static final int DIAG_4 = 10;
+    static final int PATTERN_COUNT = 11;
+    static final int[] PATTERN_SIZES = {10, 9, 10, 8, 8, 8, 8, 7, 6, 5, 4};
+
+    // each phase has one table after the other for each pattern and a bias at the end
+    static final int[] PATTERN_OFFSETS = new int[PATTERN_COUNT];
+    static final int BIAS;
+    static final int TABLE_SIZE;
+
+    // maps the bits read from one color's mask to the base 3 digits that color adds to the index
+    private static final int[] BINARY_TO_TERNARY = new int[1 << 10];
+    // the diagonals starting from a1, b1, c1, d1 and e1
+    private static final long[] DIAGONAL_MASKS = new long[5];
+    // the patterns read in each symmetry, a pattern is left out of a symmetry that reads the same squares as another
+    private static final int[][] INSTANCES = new int[Symmetry.COUNT][];
+    // the patterns read from the board by each evaluation
+    static final int INSTANCE_COUNT;
+    // the digits of the pattern instances each square is read into, as the instance shifted above its power of 3,
+    // in the order findIndexes writes the instances
+    private static final int[][] SQUARE_DIGITS = new int[64][];
+
+    static {
+        var offset = 0;
+        for (var p = 0; p < PATTERN_COUNT; p++) {
+            PATTERN_OFFSETS[p] = offset;
+            offset += pow3(PATTERN_SIZES[p]);
+        }
+        BIAS = offset;
+        TABLE_SIZE = offset + 1;
+
+        for (var bits = 0; bits < BINARY_TO_TERNARY.length; bits++) {
+            for (var i = 0; i < 10; i++) {
+                if ((bits & (1 << i)) != 0) {
+                    BINARY_TO_TERNARY[bits] += pow3(i);
+                }
+            }
+        }
+
+        for (var k = 0; k < DIAGONAL_MASKS.length; k++) {
+            for (var row = 0; row + k < 8; row++) {
+                DIAGONAL_MASKS[k] |= 1L << (row * 8 + row + k);
+            }
+        }
+
+        var instanceCount = 0;
+        for (var t = 0; t < Symmetry.COUNT; t++) {
+            List<Integer> patterns = new ArrayList<>();
+            for (var p = 0; p < PATTERN_COUNT; p++) {
+                var squares = squaresMask(p, t);
+                var duplicate = false;
+                for (var prev = 0; prev < t; prev++) {
+                    duplicate |= squaresMask(p, prev) == squares;
+                }
+                if (!duplicate) {
+                    patterns.add(p);
+                }
+            }
+            INSTANCES[t] = patterns.stream().mapToInt(Integer::intValue).toArray();
+            instanceCount += patterns.size();
+        }
+        INSTANCE_COUNT = instanceCount;
+
+        List<List<Integer>> squareDigits = new ArrayList<>();
+        for (var square = 0; square < 64; square++) {
+            squareDigits.add(new ArrayList<>());
+        }
+        var instance = 0;
+        for (var t = 0; t < Symmetry.COUNT; t++) {
+            for (var pattern : INSTANCES[t]) {
+                var squares = squares(pattern, t);
+                for (var digit = 0; digit < squares.length; digit++) {
+                    squareDigits.get(squares[digit]).add(instance << 16 | pow3(digit));
+                }
+                instance++;
+            }
+        }
+        for (var square = 0; square < 64; square++) {
+            SQUARE_DIGITS[square] = squareDigits.get(square).stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    private final short[][] weights;
+
+    public PatternEvaluator(short[][] weights) {
+        if (weights.length != PHASES) {
+            throw new IllegalArgumentException("Expected weights for " + PHASES + " phases, got " + weights.length);
+        }
+        for (var table : weights) {
+            if (table.length != TABLE_SIZE) {
+                throw new IllegalArgumentException("Expected tables of " + TABLE_SIZE + " weights, got " + table.length);
+            }
+        }
+        this.weights = weights;
+    }
+
+    private static int pow3(int exponent) {
+        var value = 1;
+        for (var i = 0; i < exponent; i++) {
+            value *= 3;
+        }
+        return value;
+    }
+
+    static int phase(OthelloBoard board) {
+        return Math.min(board.countEmpty() / EMPTIES_PER_PHASE, PHASES - 1);
+    }
+
+    // gathers the squares of the pattern from one color's mask into the low bits, in the pattern's digit order
+    private static int extract(int pattern, long bits) {
+        return switch (pattern) {
+            case EDGE_2X -> (int) (bits & 0xff) | (int) ((bits >>> 1) & 0x100) | (int) ((bits >>> 5) & 0x200);
+            case CORNER_3X3 -> (int) (bits & 0x7) | (int) ((bits >>> 5) & 0x38) | (int) ((bits >>> 10) & 0x1c0);
+            case CORNER_2X5 -> (int) (bits & 0x1f) | (int) ((bits >>> 3) & 0x3e0);
+            case ROW_2 -> (int) (bits >>> 8) & 0xff;
+            case ROW_3 -> (int) (bits >>> 16) & 0xff;
+            case ROW_4 -> (int) (bits >>> 24) & 0xff;
+            // the squares of a diagonal are in different columns, so multiplying stacks them in the top row
+            // without any carries, with each square in its own column
+            case DIAG_8, DIAG_7, DIAG_6, DIAG_5, DIAG_4 -> {
+                var k = pattern - DIAG_8;
+                yield (int) (((bits & DIAGONAL_MASKS[k]) * 0x0101010101010101L) >>> (56 + k));
+            }
+            default -> throw new IllegalArgumentException("Unknown pattern " + pattern);
+        };
+    }
+
+    static int index(int pattern, long black, long white) {
+        return PATTERN_OFFSETS[pattern]
+            + BINARY_TO_TERNARY[extract(pattern, black)]
+            + 2 * BINARY_TO_TERNARY[extract(pattern, white)];
+    }
+
+    // the square of each digit of the pattern when it is read in the given symmetry
+    static int[] squares(int pattern, int transform) {
+        var squares = new int[PATTERN_SIZES[pattern]];
+        for (var square = 0; square < 64; square++) {
+            var bits = extract(pattern, Symmetry.transform(1L << square, transform));
+            if (bits != 0) {
+                squares[Integer.numberOfTrailingZeros(bits)] = square;
+            }
+        }
+        return squares;
+    }
+
+    private static long squaresMask(int pattern, int transform) {
+        var mask = 0L;
+        for (var square : squares(pattern, transform)) {
+            mask |= 1L << square;
+        }
+        return mask;
+    }
+
+    // writes the table index of each pattern on the board to the buffer, which holds at least INSTANCE_COUNT
+    static void findIndexes(OthelloBoard board, int[] buffer) {
+        var black = board.getDiscs(OthelloBoard.BLACK);
+        var white = board.getDiscs(OthelloBoard.WHITE);
+        var count = 0;
+        for (var t = 0; t < Symmetry.COUNT; t++) {
+            var transformedBlack = Symmetry.transform(black, t);
+            var transformedWhite = Symmetry.transform(white, t);
+            for (var pattern : INSTANCES[t]) {
+                buffer[count++] = index(pattern, transformedBlack, transformedWhite);
+            }
+        }
+    }
+
+    // averages each weight with the weights of the same colors read in another order, a pattern that reads the
+    // same squares in two symmetries is only read once, so its table has to give the same weight for both orders
+    // for the evaluation to be the same for symmetric boards
+    static void symmetrize(float[] table) {
+        for (var p = 0; p < PATTERN_COUNT; p++) {
+            var size = PATTERN_SIZES[p];
+            var identity = squares(p, Symmetry.IDENTITY);
+            var identityMask = squaresMask(p, Symmetry.IDENTITY);
+
+            // the orders the pattern's own squares are read in by the symmetries that map them onto themselves
+            List<int[]> orders = new ArrayList<>();
+            for (var t = 0; t < Symmetry.COUNT; t++) {
+                if (squaresMask(p, t) != identityMask) {
+                    continue;
+                }
+                var squares = squares(p, t);
+                var order = new int[size];
+                for (var digit = 0; digit < size; digit++) {
+                    for (var j = 0; j < size; j++) {
+                        if (identity[j] == squares[digit]) {
+                            order[digit] = j;
+                        }
+                    }
+                }
+                orders.add(order);
+            }
+
+            var entries = pow3(size);
+            var digits = new int[size];
+            var symmetric = new float[entries];
+            for (var index = 0; index < entries; index++) {
+                for (int i = 0, value = index; i < size; i++, value /= 3) {
+                    digits[i] = value % 3;
+                }
+                var sum = 0f;
+                for (var order : orders) {
+                    var permuted = 0;
+                    for (var digit = size - 1; digit >= 0; digit--) {
+                        permuted = permuted * 3 + digits[order[digit]];
+                    }
+                    sum += table[PATTERN_OFFSETS[p] + permuted];
+                }
+                symmetric[index] = sum / orders.size();
+            }
+            System.arraycopy(symmetric, 0, table, PATTERN_OFFSETS[p], entries);
+        }
+    }
+
+    @Override
+    public int evaluate(OthelloBoard board) {
+        var black = board.getDiscs(OthelloBoard.BLACK);
+        var white = board.getDiscs(OthelloBoard.WHITE);
+        var table = weights[phase(board)];
+
+        int score = table[BIAS];
+        for (var t = 0; t < Symmetry.COUNT; t++) {
+            var transformedBlack = Symmetry.transform(black, t);
+            var transformedWhite = Symmetry.transform(white, t);
+            for (var pattern : INSTANCES[t]) {
+                score += table[index(pattern, transformedBlack, transformedWhite)];
+            }
+        }
+        return Score.clamp(score);
+    }
+
+    @Override
+    public Accumulator newAccumulator() {
+        return new PatternAccumulator();
+    }
+
+    // keeps the table index of every pattern instance, a move adds the mover's digit on the placed square and turns
+    // the digits of the flipped squares from the opponent's to the mover's, and unmaking it does the reverse
+    private final class PatternAccumulator implements Accumulator {
+
+        private final int[] indexes = new int[INSTANCE_COUNT];
+
+        @Override
+        public void reset(OthelloBoard board) {
+            findIndexes(board, indexes);
+        }
+
+        // adds the multiple of each digit's power of 3 to the indexes of the square's instances
+        private void addDigits(int square, int multiple) {
+            for (var digit : SQUARE_DIGITS[square]) {
+                indexes[digit >>> 16] += multiple * (digit & 0xFFFF);
+            }
+        }
+
+        private void update(int square, long flips, boolean blackMoved, int sign) {
+            // black discs are digit 1 and white discs digit 2, so a flip to black takes 1 off each digit
+            addDigits(square, sign * (blackMoved ? 1 : 2));
+            var flipSign = blackMoved ? -sign : sign;
+            for (; flips != 0; flips &= flips - 1) {
+                addDigits(Long.numberOfTrailingZeros(flips), flipSign);
+            }
+        }
+
+        @Override
+        public void makeMove(int square, long flips, boolean blackMoved) {
+            update(square, flips, blackMoved, 1);
+        }
+
+        @Override
+        public void unmakeMove(int square, long flips, boolean blackMoved) {
+            update(square, flips, blackMoved, -1);
+        }
+
+        @Override
+        public int evaluate(OthelloBoard board) {
+            var table = weights[phase(board)];
+            int score = table[BIAS];
+            for (var index : indexes) {
+                score += table[index];
+            }
+            return Score.clamp(score);
+        }
+    }
+
+    public void write(DataOutput output) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(PHASES);
+        output.writeInt(PATTERN_COUNT);
+        for (var size : PATTERN_SIZES) {
+            output.writeInt(size);
+        }
+        for (var table : weights) {
+            for (var weight : table) {
+                output.writeShort(weight);
+            }
+        }
+    }
+
+    public static PatternEvaluator read(DataInput input) throws IOException {
+        if (input.readInt() != MAGIC) {
+            throw new IOException("Not a pattern weights file");
+        }
+        var version = input.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported pattern weights version " + version);
+        }
+        var phases = input.readInt();
+        var sizes = new int[input.readInt()];
+        for (var i = 0; i < sizes.length; i++) {
+            sizes[i] = input.readInt();
+        }
+        if (phases != PHASES || !Arrays.equals(sizes, PATTERN_SIZES)) {
+            throw new IOException("Pattern weights were trained for different patterns");
+        }
+
+        var weights = new short[PHASES][TABLE_SIZE];
+        for (var table : weights) {
+            for (var i = 0; i < table.length; i++) {
+                table[i] = input.readShort();
+            }
+        }
+        return new PatternEvaluator(weights);
+    }
+
+    // loads the gzipped weights from the classpath, or returns null if there are none
+    @Nullable
+    public static PatternEvaluator loadResource(String path) throws IOException {
+        try (var stream = PatternEvaluator.class.getResourceAsStream(path)) {
+            if (stream == null) {
+                return null;
+            }
+            var input = new DataInputStream(new BufferedInputStream(new GZIPInputStream(stream)));
+            return read(input);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package engine;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+// fits the pattern weights offline by least squares on positions from self play, labelled with the final disc
+// difference for black: the last empties of each position are solved exactly and the earlier positions take the
+// result of the game they were played in, the games start with random moves and are then played by a short
+// search on the heuristic, with a few random moves along the way so the positions are varied
+public final class PatternTrainer {
+
+    private static final int RANDOM_OPENING_MOVES = 10;
+    private static final double RANDOM_MOVE_CHANCE = 0.05;
+    private static final int SEARCH_DEPTH = 2;
+    // every position with this many empties or fewer is solved for its own label
+    private static final int SOLVE_EMPTIES = 14;
+    private static final float LEARNING_RATE = 0.002f;
+    private static final float REGULARIZATION = 0.0001f;
+    private static final int SAMPLES_PER_GAME = 61;
+    private static final int MATCH_MAX_TIME = 1_000_000;
+
+    private final Random random;
+    private final EndgameSolver solver = new EndgameSolver();
+    private long[] blackDiscs = new long[0];
+    private long[] whiteDiscs = new long[0];
+    private float[] labels = new float[0];
+    private int sampleCount = 0;
+
+    public PatternTrainer(Random random) {
+        this.random = random;
+    }
+
+    // the samples played so far, the arrays hold at least sampleCount of them, NnueTrainer fits its network on them
+    int getSampleCount() {
+        return sampleCount;
+    }
+
+    long[] getBlackDiscs() {
+        return blackDiscs;
+    }
+
+    long[] getWhiteDiscs() {
+        return whiteDiscs;
+    }
+
+    float[] getLabels() {
+        return labels;
+    }
+
+    private static int search(OthelloBoard board, int depth, int alpha, int beta) {
+        var moves = board.findLegalMoves();
+        if (depth == 0 || moves == 0) {
+            return OthelloAgent.findHeuristic(board);
+        }
+        var maximizer = board.isBlackMove();
+        for (; moves != 0; moves = OthelloBoard.removeFirstMove(moves)) {
+            var heuristic = search(board.makeMoved(OthelloBoard.firstMove(moves)), depth - 1, alpha, beta);
+            if (maximizer) {
+                alpha = Math.max(alpha, heuristic);
+            } else {
+                beta = Math.min(beta, heuristic);
+            }
+            if (alpha >= beta) {
+                break;
+            }
+        }
+        return maximizer ? alpha : beta;
+    }
+
+    private int chooseMove(OthelloBoard board, long moves, int ply) {
+        if (ply < RANDOM_OPENING_MOVES || random.nextDouble() < RANDOM_MOVE_CHANCE) {
+            return OthelloBoard.randomMove(random, moves);
+        }
+        var maximizer = board.isBlackMove();
+        var bestMove = OthelloBoard.firstMove(moves);
+        var bestHeuristic = maximizer ? -Score.INF : Score.INF;
+        for (; moves != 0; moves = OthelloBoard.removeFirstMove(moves)) {
+            var move = OthelloBoard.firstMove(moves);
+            var heuristic = search(board.makeMoved(move), SEARCH_DEPTH - 1, -Score.INF, Score.INF);
+            if (maximizer ? heuristic > bestHeuristic : heuristic < bestHeuristic) {
+                bestHeuristic = heuristic;
+                bestMove = move;
+            }
+        }
+        return bestMove;
+    }
+
+    // the exact final disc difference for black
+    private int solveForBlack(OthelloBoard board) {
+        return solver.solve(board, Long.MAX_VALUE);
+    }
+
+    private void addSample(OthelloBoard board, float label) {
+        if (sampleCount == labels.length) {
+            var capacity = Math.max(1024, labels.length * 2);
+            blackDiscs = Arrays.copyOf(blackDiscs, capacity);
+            whiteDiscs = Arrays.copyOf(whiteDiscs, capacity);
+            labels = Arrays.copyOf(labels, capacity);
+        }
+        blackDiscs[sampleCount] = board.getDiscs(OthelloBoard.BLACK);
+        whiteDiscs[sampleCount] = board.getDiscs(OthelloBoard.WHITE);
+        labels[sampleCount] = label;
+        sampleCount++;
+    }
+
+    // plays a game and adds its positions as samples
+    public void playGame() {
+        var board = OthelloBoard.initial();
+        var positions = new OthelloBoard[SAMPLES_PER_GAME];
+        var count = 0;
+        var result = 0;
+        for (var ply = 0; ; ply++) {
+            var moves = board.findLegalMoves();
+            if (moves == 0) {
+                board.skipTurn();
+                moves = board.findLegalMoves();
+                if (moves == 0) {
+                    result = board.countDiscs(OthelloBoard.BLACK) - board.countDiscs(OthelloBoard.WHITE);
+                    break;
+                }
+            }
+            if (board.countEmpty() <= SOLVE_EMPTIES) {
+                // the rest of the game is played perfectly, so its positions are labelled by their own solution
+                result = solveForBlack(board);
+                while (moves != 0) {
+                    addSample(board, solveForBlack(board));
+                    board.makeMove(OthelloBoard.randomMove(random, moves));
+                    moves = board.findLegalMoves();
+                    if (moves == 0) {
+                        board.skipTurn();
+                        moves = board.findLegalMoves();
+                    }
+                }
+                break;
+            }
+            positions[count++] = OthelloBoard.from(board);
+            board.makeMove(chooseMove(board, moves, ply));
+        }
+        for (var i = 0; i < count; i++) {
+            addSample(positions[i], result);
+        }
+    }
+
+    // stochastic gradient descent on the squared error, each sample is also used with the colors swapped so the
+    // weights are the same for either color
+    public float[][] train(int epochs) {
+        var weights = new float[PatternEvaluator.PHASES][PatternEvaluator.TABLE_SIZE];
+        var indexes = new int[PatternEvaluator.INSTANCE_COUNT];
+        var order = new int[sampleCount];
+        for (var i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+
+        for (var epoch = 0; epoch < epochs; epoch++) {
+            for (var i = order.length - 1; i > 0; i--) {
+                var j = random.nextInt(i + 1);
+                var temp = order[i];
+                order[i] = order[j];
+                order[j] = temp;
+            }
+
+            var totalError = 0.0;
+            for (var sample : order) {
+                for (var swapped = 0; swapped < 2; swapped++) {
+                    var board = swapped == 0 ?
+                        OthelloBoard.of(blackDiscs[sample], whiteDiscs[sample], true) :
+                        OthelloBoard.of(whiteDiscs[sample], blackDiscs[sample], true);
+                    var label = swapped == 0 ? labels[sample] : -labels[sample];
+                    var table = weights[PatternEvaluator.phase(board)];
+
+                    PatternEvaluator.findIndexes(board, indexes);
+                    var prediction = table[PatternEvaluator.BIAS];
+                    for (var index : indexes) {
+                        prediction += table[index];
+                    }
+                    var error = prediction - label;
+                    totalError += error * error;
+
+                    var step = LEARNING_RATE * error;
+                    table[PatternEvaluator.BIAS] -= step;
+                    for (var index : indexes) {
+                        table[index] -= step + LEARNING_RATE * REGULARIZATION * table[index];
+                    }
+                }
+            }
+            System.out.printf("epoch %d: rms error %.3f discs%n", epoch, Math.sqrt(totalError / (2.0 * sampleCount)));
+        }
+
+        for (var table : weights) {
+            PatternEvaluator.symmetrize(table);
+        }
+        return weights;
+    }
+
+    public static PatternEvaluator toEvaluator(float[][] weights) {
+        var fixed = new short[weights.length][];
+        for (var phase = 0; phase < weights.length; phase++) {
+            fixed[phase] = new short[weights[phase].length];
+            for (var i = 0; i < weights[phase].length; i++) {
+                var weight = Math.round(weights[phase][i] * PatternEvaluator.WEIGHT_SCALE);
+                fixed[phase][i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, weight));
+            }
+        }
+        return new PatternEvaluator(fixed);
+    }
+
+    // plays pairs of games from random openings, each side plays each opening once as black and once as white,
+    // and returns the disc difference per game of the first evaluator
+    public static float playMatch(Evaluator first, Evaluator second, int pairs, int depth, Random random) {
+        // the time limit is out of reach so the depth alone decides how far the agents search
+        var firstAgent = new OthelloAgent(4, MATCH_MAX_TIME);
+        var secondAgent = new OthelloAgent(4, MATCH_MAX_TIME);
+        firstAgent.setEvaluator(first);
+        secondAgent.setEvaluator(second);
+        // both sides are left the same endgame search so the match compares the evaluation alone
+        firstAgent.setEndgameEmpties(0);
+        secondAgent.setEndgameEmpties(0);
+
+        var totalDifference = 0;
+        var wins = 0;
+        for (var pair = 0; pair < pairs; pair++) {
+            var opening = OthelloBoard.initial();
+            for (var ply = 0; ply < 8; ply++) {
+                opening.makeMove(OthelloBoard.randomMove(random, opening.findLegalMoves()));
+            }
+
+            for (var firstIsBlack = 0; firstIsBlack < 2; firstIsBlack++) {
+                var board = OthelloBoard.from(opening);
+                while (true) {
+                    if (board.findLegalMoves() == 0) {
+                        board.skipTurn();
+                        if (board.findLegalMoves() == 0) {
+                            break;
+                        }
+                    }
+                    var agent = board.isBlackMove() == (firstIsBlack == 1) ? firstAgent : secondAgent;
+                    board.makeMove(agent.findBestMove(board, depth).tile());
+                }
+                var difference = board.countDiscs(OthelloBoard.BLACK) - board.countDiscs(OthelloBoard.WHITE);
+                difference = firstIsBlack == 1 ? difference : -difference;
+                totalDifference += difference;
+                wins += difference > 0 ? 1 : 0;
+            }
+        }
+        System.out.printf("won %d of %d games%n", wins, 2 * pairs);
+        return totalDifference / (2f * pairs);
+    }
+
+    // usage: PatternTrainer [games] [epochs] [output], writes the gzipped weights to the output file
+    // and plays a match of the new weights against the heuristic at depth 4
+    public static void main(String[] args) throws IOException {
+        var games = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        var epochs = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        var output = args.length > 2 ? args[2] : "patterns.bin.gz";
+
+        var trainer = new PatternTrainer(new Random(1));
+        var startTime = System.currentTimeMillis();
+        for (var game = 0; game < games; game++) {
+            trainer.playGame();
+            if ((game + 1) % 1000 == 0) {
+                System.out.printf("played %d games, %d samples, %d s%n", game + 1, trainer.sampleCount,
+                    (System.currentTimeMillis() - startTime) / 1000);
+            }
+        }
+
+        var evaluator = toEvaluator(trainer.train(epochs));
+        try (var stream = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(output))))) {
+            evaluator.write(stream);
+        }
+        System.out.printf("wrote weights to %s%n", output);
+
+        var difference = playMatch(evaluator, HeuristicEvaluator.INSTANCE, 50, 4, new Random(2));
+        System.out.printf("disc difference per game against the heuristic: %.2f%n", difference);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+public final class Perft {
+
+    // leaf counts from the initial position indexed by depth, a pass counts as a ply and a finished game as a leaf
+    public static final long[] KNOWN_COUNTS = {
+        1L, 4L, 12L, 56L, 244L, 1396L, 8200L, 55092L, 390216L, 3005288L, 24571284L, 212258800L, 1939886636L, 18429641748L
+    };
+    // subtrees at or below this depth are counted serially by a single fork/join task
+    private static final int SPLIT_DEPTH = 6;
+
+    private Perft() {
+    }
+
+    public record Result(int depth, long nodes, long timeNanos) {
+
+        public double nodesPerSecond() {
+            return timeNanos == 0 ? 0 : nodes * 1e9 / timeNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("depth: %d, nodes: %d, time_taken: %dms, nodes_per_sec: %.0f",
+                depth, nodes, timeNanos / 1_000_000, nodesPerSecond());
+        }
+    }
+
+    // counts the leaves to the depth, searching the board in place and restoring it before returning
+    public static long perft(OthelloBoard board, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+
+        var moves = board.findLegalMoves();
+        if (moves == 0) {
+            board.skipTurn();
+            var nodes = board.findLegalMoves() == 0 ? 1 : perft(board, depth - 1);
+            board.skipTurn();
+            return nodes;
+        }
+        if (depth == 1) {
+            return OthelloBoard.countMoves(moves);
+        }
+
+        var nodes = 0L;
+        for (; moves != 0; moves = OthelloBoard.removeFirstMove(moves)) {
+            var move = OthelloBoard.firstMove(moves);
+            var flips = board.makeMove(move);
+            nodes += perft(board, depth - 1);
+            board.unmakeMove(move, flips);
+        }
+        return nodes;
+    }
+
+    private static class PerftTask extends RecursiveTask<Long> {
+
+        private final OthelloBoard board;
+        private final int depth;
+
+        PerftTask(OthelloBoard board, int depth) {
+            this.board = board;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            if (depth <= SPLIT_DEPTH) {
+                return perft(board, depth);
+            }
+
+            var moves = board.findLegalMoves();
+            if (moves == 0) {
+                var skipped = board.skippedTurn();
+                return skipped.findLegalMoves() == 0 ? 1L : new PerftTask(skipped, depth - 1).compute();
+            }
+
+            // each child gets its own board copy so the subtrees can be counted on different threads
+            List<PerftTask> tasks = new ArrayList<>();
+            for (; moves != 0; moves = OthelloBoard.removeFirstMove(moves)) {
+                var task = new PerftTask(board.makeMoved(OthelloBoard.firstMove(moves)), depth - 1);
+                task.fork();
+                tasks.add(task);
+            }
+
+            var nodes = 0L;
+            for (var task : tasks) {
+                nodes += task.join();
+            }
+            return nodes;
+        }
+    }
+
+    public static long parallelPerft(ForkJoinPool pool, OthelloBoard board, int depth) {
+        return pool.invoke(new PerftTask(OthelloBoard.from(board), depth));
+    }
+
+    public static Result run(OthelloBoard board, int depth) {
+        var startTime = System.nanoTime();
+        var nodes = perft(OthelloBoard.from(board), depth);
+        return new Result(depth, nodes, System.nanoTime() - startTime);
+    }
+
+    public static Result runParallel(ForkJoinPool pool, OthelloBoard board, int depth) {
+        var startTime = System.nanoTime();
+        var nodes = parallelPerft(pool, board, depth);
+        return new Result(depth, nodes, System.nanoTime() - startTime);
+    }
+
+    // usage: Perft [depth] [threads], verifies the counts against the known table and prints the throughput
+    public static void main(String[] args) {
+        var depth = args.length > 0 ? Integer.parseInt(args[0]) : 11;
+        var threads = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+
+        var board = OthelloBoard.initial();
+        for (var d = 1; d <= depth; d++) {
+            Result result;
+            if (threads > 1) {
+                var pool = new ForkJoinPool(threads);
+                result = runParallel(pool, board, d);
+                pool.shutdown();
+            } else {
+                result = run(board, d);
+            }
+
+            var status = d >= KNOWN_COUNTS.length ? "unknown" : KNOWN_COUNTS[d] == result.nodes() ? "ok" : "MISMATCH";
+            System.out.println(result + ", threads: " + threads + ", " + status);
+        }
+    }
+}
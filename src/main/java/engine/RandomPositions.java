@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package engine;
+
+import java.util.Random;
+
+// positions reached by random play, the inputs of the benchmarks and the tests of the engine
+final class RandomPositions {
+
+    private RandomPositions() {
+    }
+
+    // plays random moves from the initial board until the empties are reached, restarting on games that end early
+    static OthelloBoard randomPosition(Random random, int empties) {
+        while (true) {
+            var board = OthelloBoard.initial();
+            while (board.countEmpty() > empties) {
+                var moves = board.findLegalMoves();
+                if (moves == 0) {
+                    board.skipTurn();
+                    moves = board.findLegalMoves();
+                    if (moves == 0) {
+                        break;
+                    }
+                }
+                board.makeMove(OthelloBoard.randomMove(random, moves));
+            }
+            if (board.countEmpty() == empties && board.findLegalMoves() != 0) {
+                return board;
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package engine;
+
+public class ScalarBatchKernel implements BatchKernel {
+
+    @Override
+    public void findLegalMoves(long[] own, long[] opponent, long[] moves, int count) {
+        for (var i = 0; i < count; i++) {
+            moves[i] = OthelloBoard.findLegalMoves(own[i], opponent[i]);
+        }
+    }
+
+    @Override
+    public void makeMoves(long[] own, long[] opponent, long[] moveBits, long[] flips, int count) {
+        for (var i = 0; i < count; i++) {
+            var moveBit = moveBits[i];
+            var f = moveBit == 0 ? 0L : FlipTables.findFlips(Long.numberOfTrailingZeros(moveBit), own[i], opponent[i]);
+            own[i] |= moveBit | f;
+            opponent[i] &= ~f;
+            flips[i] = f;
+        }
+    }
+
+    @Override
+    public void countDiscs(long[] discs, int[] counts, int count) {
+        for (var i = 0; i < count; i++) {
+            counts[i] = Long.bitCount(discs[i]);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package engine;
+
+public class ScalarNnueKernel implements NnueKernel {
+
+    @Override
+    public void add(short[] accumulator, short[] weights, int offset) {
+        for (var i = 0; i < accumulator.length; i++) {
+            accumulator[i] += weights[offset + i];
+        }
+    }
+
+    @Override
+    public void subtract(short[] accumulator, short[] weights, int offset) {
+        for (var i = 0; i < accumulator.length; i++) {
+            accumulator[i] -= weights[offset + i];
+        }
+    }
+
+    @Override
+    public int dot(short[] accumulator, short clip, short[] weights, int offset) {
+        var sum = 0;
+        for (var i = 0; i < accumulator.length; i++) {
+            var activation = Math.max(0, Math.min(clip, accumulator[i]));
+            sum += activation * weights[offset + i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package engine;
+
+// scores are fixed point ints from black's point of view, so comparisons are integer ops, they pack into the low word
+// of a tt entry, and a search gives the same result on any jvm
+// heuristic scores stay within MAX_HEURISTIC, exact results are offset beyond them by EXACT so a win always ranks
+// above any heuristic score and a loss below, and INF is beyond both as the bound of a full window
+public final class Score {
+
+    // units per point of the displayed heuristic, which is also the pattern weights' units per disc
+    public static final int SCALE = 128;
+    // the offset of exact results, a disc difference of d scores EXACT + d * SCALE for a win
+    public static final int EXACT = 1000 * SCALE;
+    // below the smallest exact win and above the largest exact loss
+    public static final int MAX_HEURISTIC = EXACT - SCALE;
+    public static final int INF = 1 << 24;
+
+    private Score() {
+    }
+
+    // the score of an exact final disc difference for black
+    public static int exact(int discDifference) {
+        return Integer.signum(discDifference) * EXACT + discDifference * SCALE;
+    }
+
+    public static boolean isExact(int score) {
+        return Math.abs(score) > MAX_HEURISTIC && Math.abs(score) < INF;
+    }
+
+    // keeps a heuristic score out of the exact range
+    public static int clamp(int score) {
+        return Math.max(-MAX_HEURISTIC, Math.min(MAX_HEURISTIC, score));
+    }
+
+    // the score as it is displayed, heuristic points with exact results as 1000 plus the disc difference
+    public static float toFloat(int score) {
+        return (float) score / SCALE;
+    }
+}
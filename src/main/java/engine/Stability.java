@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package engine;
+
+// finds discs that can never be flipped for the rest of the game, the result is a subset of the truly stable discs:
+// a disc is stable if on each of its 4 lines it cannot be outflanked, because the line is full or a neighbour on
+// the line is a stable disc of its own color
+// the edges are exact, looked up from a table of every edge configuration, and stability spreads from them inwards
+public final class Stability {
+
+    private static final long EDGES = 0xff818181818181ffL;
+    private static final long TOP_ROW = 0xffL;
+    // the opposite of each direction of OthelloBoard.SHIFTS
+    private static final int[] OPPOSITES = {1, 0, 3, 2, 7, 6, 5, 4};
+
+    // the stable discs of an edge for the first color, indexed by the first color's bits and then the second's
+    private static final byte[] EDGE_STABLE = new byte[1 << 16];
+    // the squares 1, 2 and 4 steps in each direction can reach, and the squares that many steps from the wall
+    private static final long[][] STEP_MASKS = new long[3][OthelloBoard.SHIFTS.length];
+    private static final long[][] WALL_MASKS = new long[3][OthelloBoard.SHIFTS.length];
+
+    static {
+        for (var direction = 0; direction < OthelloBoard.SHIFTS.length; direction++) {
+            var reachable = -1L;
+            for (var steps = 1; steps <= 4; steps++) {
+                reachable = shift(reachable, direction);
+                if (Integer.bitCount(steps) == 1) {
+                    STEP_MASKS[Integer.numberOfTrailingZeros(steps)][direction] = reachable;
+                }
+            }
+        }
+        for (var direction = 0; direction < OthelloBoard.SHIFTS.length; direction++) {
+            for (var i = 0; i < 3; i++) {
+                WALL_MASKS[i][direction] = ~STEP_MASKS[i][OPPOSITES[direction]];
+            }
+        }
+
+        var solved = new boolean[1 << 16];
+        for (var own = 0; own < 256; own++) {
+            for (var opponent = 0; opponent < 256; opponent++) {
+                if ((own & opponent) == 0) {
+                    findEdgeStable(own, opponent, solved);
+                }
+            }
+        }
+    }
+
+    private Stability() {
+    }
+
+    // the discs a disc placed on the square flips along the edge, for the placing color
+    private static int findEdgeFlips(int own, int opponent, int square) {
+        var flips = 0;
+        for (var step = -1; step <= 1; step += 2) {
+            var line = 0;
+            var i = square + step;
+            while (i >= 0 && i < 8 && (opponent & (1 << i)) != 0) {
+                line |= 1 << i;
+                i += step;
+            }
+            if (i >= 0 && i < 8 && (own & (1 << i)) != 0) {
+                flips |= line;
+            }
+        }
+        return flips;
+    }
+
+    // a disc of the first color is stable on the edge if it stays unflipped whatever discs either color places on
+    // the empty squares, placements are not checked for legality as the lines off the edge can make any of them legal
+    private static int findEdgeStable(int own, int opponent, boolean[] solved) {
+        var index = (own << 8) | opponent;
+        if (solved[index]) {
+            return EDGE_STABLE[index] & 0xff;
+        }
+
+        var stable = own;
+        var empty = ~(own | opponent) & 0xff;
+        for (var square = 0; square < 8 && stable != 0; square++) {
+            var bit = 1 << square;
+            if ((empty & bit) == 0) {
+                continue;
+            }
+            // the first color places a disc, its own discs cannot flip but must stay stable afterwards
+            var flips = findEdgeFlips(own, opponent, square);
+            stable &= findEdgeStable(own | bit | flips, opponent & ~flips, solved);
+
+            // the second color places a disc, and the first color's discs it flips are not stable
+            flips = findEdgeFlips(opponent, own, square);
+            stable &= findEdgeStable(own & ~flips, opponent | bit | flips, solved);
+        }
+
+        EDGE_STABLE[index] = (byte) stable;
+        solved[index] = true;
+        return stable;
+    }
+
+    private static long shift(long discs, int direction) {
+        var amount = OthelloBoard.SHIFTS[direction];
+        var shifted = amount > 0 ? discs << amount : discs >>> -amount;
+        return shifted & OthelloBoard.SHIFT_MASKS[direction];
+    }
+
+    // shifts the discs 1, 2 or 4 steps in the direction at once, for steps index 0, 1 or 2
+    private static long shiftSteps(long discs, int direction, int steps) {
+        var amount = OthelloBoard.SHIFTS[direction] << steps;
+        var shifted = amount > 0 ? discs << amount : discs >>> -amount;
+        return shifted & STEP_MASKS[steps][direction];
+    }
+
+    // the squares whose line in the direction is filled up to the wall, found by doubling the run of filled squares
+    // checked ahead of each square, a square near the wall needs no more squares than there are before it
+    private static long findFilledTowards(long filled, int direction) {
+        var opposite = OPPOSITES[direction];
+        var full = filled;
+        for (var i = 0; i < 3; i++) {
+            full &= shiftSteps(full, opposite, i) | WALL_MASKS[i][direction];
+        }
+        return full;
+    }
+
+    private static long findFullRows(long filled) {
+        // the lowest bit of each row ends up as the and of the whole row
+        var rows = filled & (filled >>> 4);
+        rows &= rows >>> 2;
+        rows &= rows >>> 1;
+        return (rows & 0x0101010101010101L) * 0xff;
+    }
+
+    private static long findFullColumns(long filled) {
+        // the lowest row ends up as the and of all the rows
+        var columns = filled & (filled >>> 32);
+        columns &= columns >>> 16;
+        columns &= columns >>> 8;
+        return (columns & 0xff) * 0x0101010101010101L;
+    }
+
+    // the squares whose line along the axis of the direction is full from wall to wall
+    private static long findFullLines(long filled, int direction) {
+        return findFilledTowards(filled, direction) & findFilledTowards(filled, OPPOSITES[direction]);
+    }
+
+    private static long findEdgesStable(long own, long opponent) {
+        var stable = (long) (EDGE_STABLE[(int) ((own & TOP_ROW) << 8 | (opponent & TOP_ROW))] & 0xff);
+        stable |= (long) (EDGE_STABLE[(int) ((own >>> 48 & 0xff00) | opponent >>> 56)] & 0xff) << 56;
+
+        // the left and right columns are the top and bottom rows of the transposed board
+        var transposedOwn = Symmetry.transpose(own);
+        var transposedOpponent = Symmetry.transpose(opponent);
+        var columns = (long) (EDGE_STABLE[(int) ((transposedOwn & TOP_ROW) << 8 | (transposedOpponent & TOP_ROW))] & 0xff);
+        columns |= (long) (EDGE_STABLE[(int) ((transposedOwn >>> 48 & 0xff00) | transposedOpponent >>> 56)] & 0xff) << 56;
+        return stable | Symmetry.transpose(columns);
+    }
+
+    // the stable discs of the first color
+    public static long findStable(long own, long opponent) {
+        if (own == 0) {
+            return 0;
+        }
+        var filled = own | opponent;
+        // index 4 and 5 of the directions are the two diagonal axes
+        var fullHorizontal = findFullRows(filled);
+        var fullVertical = findFullColumns(filled);
+        var fullDiagonal = findFullLines(filled, 4);
+        var fullAntiDiagonal = findFullLines(filled, 5);
+
+        var stable = findEdgesStable(own, opponent)
+            | (own & fullHorizontal & fullVertical & fullDiagonal & fullAntiDiagonal);
+
+        // spread inwards: a disc is protected on an axis when its line is full or a neighbour on it is stable,
+        // since flipping it would flip that neighbour too, the edge discs are already exact from the table
+        var inner = own & ~EDGES;
+        while (true) {
+            var horizontal = fullHorizontal | shift(stable, 0) | shift(stable, 1);
+            var vertical = fullVertical | (stable << 8) | (stable >>> 8);
+            var diagonal = fullDiagonal | shift(stable, 4) | shift(stable, 7);
+            var antiDiagonal = fullAntiDiagonal | shift(stable, 5) | shift(stable, 6);
+            var next = stable | (inner & horizontal & vertical & diagonal & antiDiagonal);
+            if (next == stable) {
+                return stable;
+            }
+            stable = next;
+        }
+    }
+
+    public static long findStable(OthelloBoard board, byte color) {
+        var opponent = color == OthelloBoard.BLACK ? OthelloBoard.WHITE : OthelloBoard.BLACK;
+        return findStable(board.getDiscs(color), board.getDiscs(opponent));
+    }
+}
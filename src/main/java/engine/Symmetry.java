@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package engine;
+
+// the 8 symmetries of the board, each transform id is made of 3 flags applied in order:
+// bit 2 transposes the board along the a1-h8 diagonal, bit 1 mirrors the rows and bit 0 mirrors the columns
+public final class Symmetry {
+
+    public static final int IDENTITY = 0;
+    public static final int COUNT = 8;
+    private static final int MIRROR_COLS = 1;
+    private static final int MIRROR_ROWS = 2;
+    private static final int TRANSPOSE = 4;
+
+    private Symmetry() {
+    }
+
+    public static long mirrorRows(long bits) {
+        return Long.reverseBytes(bits);
+    }
+
+    public static long mirrorCols(long bits) {
+        // reverse the bits within each byte, since each byte is a row
+        bits = ((bits >>> 1) & 0x5555555555555555L) | ((bits & 0x5555555555555555L) << 1);
+        bits = ((bits >>> 2) & 0x3333333333333333L) | ((bits & 0x3333333333333333L) << 2);
+        bits = ((bits >>> 4) & 0x0f0f0f0f0f0f0f0fL) | ((bits & 0x0f0f0f0f0f0f0f0fL) << 4);
+        return bits;
+    }
+
+    public static long transpose(long bits) {
+        // swap the off-diagonal 4x4, 2x2 and 1x1 blocks with delta swaps
+        var t = 0x0f0f0f0f00000000L & (bits ^ (bits << 28));
+        bits ^= t ^ (t >>> 28);
+        t = 0x3333000033330000L & (bits ^ (bits << 14));
+        bits ^= t ^ (t >>> 14);
+        t = 0x5500550055005500L & (bits ^ (bits << 7));
+        bits ^= t ^ (t >>> 7);
+        return bits;
+    }
+
+    public static long transform(long bits, int transform) {
+        if ((transform & TRANSPOSE) != 0) {
+            bits = transpose(bits);
+        }
+        if ((transform & MIRROR_ROWS) != 0) {
+            bits = mirrorRows(bits);
+        }
+        if ((transform & MIRROR_COLS) != 0) {
+            bits = mirrorCols(bits);
+        }
+        return bits;
+    }
+
+    public static int transformSquare(int square, int transform) {
+        var row = square / 8;
+        var col = square % 8;
+        if ((transform & TRANSPOSE) != 0) {
+            var temp = row;
+            row = col;
+            col = temp;
+        }
+        if ((transform & MIRROR_ROWS) != 0) {
+            row = 7 - row;
+        }
+        if ((transform & MIRROR_COLS) != 0) {
+            col = 7 - col;
+        }
+        return row * 8 + col;
+    }
+
+    // the transform that undoes the given transform, mirrors commute with each other but swap when moved past a transpose
+    public static int inverse(int transform) {
+        if ((transform & TRANSPOSE) == 0) {
+            return transform;
+        }
+        return TRANSPOSE | ((transform & MIRROR_COLS) << 1) | ((transform & MIRROR_ROWS) >> 1);
+    }
+}
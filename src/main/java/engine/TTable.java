@@ -4,84 +4,148 @@
 
 package engine;
 
-import lombok.Getter;
-
-import javax.annotation.Nullable;
-import java.util.Random;
+import java.util.Arrays;
 
+// transposition table stored in a flat array, each entry is a key word and a data word packing the score, depth,
+// bound, best move and the generation it was written in, and entries are grouped in buckets of 4 so a bucket
+// fills one 64 byte cache line
+// the table can be shared by threads searching at the same time without locks, the key word is stored xor-ed with
+// the data word, so an entry torn by two threads writing it at once fails the key check and is treated as a miss
 public class TTable {
 
-    public record Node(long key, float heuristic, int depth) {
-    }
+    public static final int ENTRY_BYTES = 16;
+    public static final int BUCKET_SIZE = 4;
+    // the largest table whose entries fit a long[] once the size is rounded down to a power of two, 2^30 longs
+    public static final int MAX_SIZE_MB = (int) (((1L << 30) * Long.BYTES) >> 20);
 
-    private final int[][] table;
-    private final Node[][] cache;
-    @Getter
-    private int hits = 0;
-    @Getter
-    private int misses = 0;
-
-    public TTable(int tableSize) {
-        // each cache line has 2 elements, one being "replace by depth" and one being "replace always"
-        this.cache = new Node[tableSize][2];
-
-        var tableLen = OthelloBoard.getBoardSize() * OthelloBoard.getBoardSize();
-        var generator = new Random();
-        table = new int[tableLen][3];
-        for (var i = 0; i < tableLen; i++) {
-            for (var j = 0; j < 3; j++) {
-                var n = generator.nextInt();
-                table[i][j] = n >= 0 ? n : -n;
-            }
+    // the data word returned by probe when the key is not in the table, stored entries are never 0 as their bound is
+    public static final long MISS = 0L;
+
+    // bounds of a stored score, black is the maximizer so a lower bound means the score is at least the stored score
+    public static final int EXACT = 1;
+    public static final int LOWER = 2;
+    public static final int UPPER = 3;
+
+    private static final int DEPTH_SHIFT = 32;
+    private static final int BOUND_SHIFT = 40;
+    private static final int MOVE_SHIFT = 42;
+    private static final int AGE_SHIFT = 49;
+    private static final int AGE_MASK = 0xFF;
+    // how many plies of depth an entry is worth less for each generation it is older than the current search
+    private static final int AGE_WEIGHT = 8;
+
+    private final long[] entries;
+    private final int bucketMask;
+    private int generation = 0;
+
+    public TTable(int sizeMb) {
+        if (sizeMb <= 0) {
+            throw new IllegalArgumentException("Transposition table size must be positive, was " + sizeMb + "mb");
+        }
+        if (sizeMb > MAX_SIZE_MB) {
+            throw new IllegalArgumentException("Transposition table size must be at most " + MAX_SIZE_MB + "mb, was " + sizeMb + "mb");
         }
+        // round the size down to a power of two so the bucket index is a mask of the key
+        var bucketCount = Long.highestOneBit((long) sizeMb * (1 << 20) / (ENTRY_BYTES * BUCKET_SIZE));
+        this.bucketMask = (int) bucketCount - 1;
+        this.entries = new long[(int) bucketCount * BUCKET_SIZE * 2];
     }
 
     public long hash(OthelloBoard board) {
-        long hash = 0;
-        for (var i = 0; i < table.length; i++) {
-            hash = hash ^ table[i][board.getSquare(i)];
-        }
-        return hash;
+        // the board maintains its zobrist key incrementally as moves are made
+        return board.getHashKey();
+    }
+
+    public int getCapacity() {
+        return entries.length / 2;
+    }
+
+    // entries from previous searches are kept, they still hold valid scores but are the first to be replaced
+    public void startSearch() {
+        generation = (generation + 1) & AGE_MASK;
     }
 
     public void clear() {
-        for (var node : cache) {
-            node[0] = null;
-            node[1] = null;
-        }
+        Arrays.fill(entries, 0L);
+        generation = 0;
+    }
+
+    private int findBucket(long key) {
+        return ((int) key & bucketMask) * BUCKET_SIZE * 2;
     }
 
-    public void put(Node node) {
-        var h = (int) (node.key() % cache.length);
-        var cacheLine = cache[h];
-        // check if "replace by depth" is populated
-        if (cacheLine[0] != null) {
-            // populated, new node is better so we do replacement
-            if (node.depth() > cacheLine[0].depth()) {
-                cacheLine[1] = cacheLine[0];
-                cacheLine[0] = node;
-            } else {
-                // new node is worse, so it should be sent to "replace always"
-                cacheLine[1] = node;
+    // returns the data word stored for the key, or MISS when the key is not in the table
+    public long probe(long key) {
+        var bucket = findBucket(key);
+        for (var i = bucket; i < bucket + BUCKET_SIZE * 2; i += 2) {
+            var data = entries[i + 1];
+            if ((entries[i] ^ data) == key && data != MISS) {
+                return data;
             }
-        } else {
-            // not populated, so it can be used
-            cacheLine[0] = node;
         }
+        return MISS;
     }
 
-    @Nullable
-    public Node get(long key) {
-        var h = (int) (key % cache.length);
-        var cacheLine = cache[h];
+    public void store(long key, int score, int depth, int bound, int bestMove) {
+        var bucket = findBucket(key);
 
-        for (var n : cacheLine) {
-            if (n != null && n.key() == key) {
-                hits++;
-                return n;
+        // reuse the entry of the same key, unless it is worth more than the new one, otherwise replace the entry
+        // worth the least by depth and age
+        var victim = bucket;
+        var victimWorth = Integer.MAX_VALUE;
+        for (var i = bucket; i < bucket + BUCKET_SIZE * 2; i += 2) {
+            var data = entries[i + 1];
+            if ((entries[i] ^ data) == key || data == MISS) {
+                // the table is shared between threads, so a shallow bound from one thread must not overwrite a
+                // deeper result of the same search from another
+                if (data != MISS && depth < depth(data) && bound != EXACT && age(data) == generation) {
+                    return;
+                }
+                victim = i;
+                // keep the best move we already had when the new entry does not have one
+                if (bestMove == MoveOrdering.NO_MOVE && data != MISS) {
+                    bestMove = bestMove(data);
+                }
+                break;
+            }
+            var worth = depth(data) - AGE_WEIGHT * ((generation - age(data)) & AGE_MASK);
+            if (worth < victimWorth) {
+                victim = i;
+                victimWorth = worth;
             }
         }
-        misses++;
-        return null;
+
+        var data = pack(score, depth, bound, bestMove, generation);
+        entries[victim] = key ^ data;
+        entries[victim + 1] = data;
+    }
+
+    private static long pack(int score, int depth, int bound, int bestMove, int age) {
+        return (score & 0xFFFFFFFFL)
+            | (long) (depth & 0xFF) << DEPTH_SHIFT
+            | (long) bound << BOUND_SHIFT
+            | (long) (bestMove + 1) << MOVE_SHIFT
+            | (long) age << AGE_SHIFT;
+    }
+
+    public static int score(long data) {
+        return (int) data;
+    }
+
+    public static int depth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & 0xFF;
+    }
+
+    public static int bound(long data) {
+        return (int) (data >>> BOUND_SHIFT) & 0x3;
+    }
+
+    // the best move of the entry, or MoveOrdering.NO_MOVE if it does not have one
+    public static int bestMove(long data) {
+        return ((int) (data >>> MOVE_SHIFT) & 0x7F) - 1;
+    }
+
+    private static int age(long data) {
+        return (int) (data >>> AGE_SHIFT) & AGE_MASK;
     }
 }
@@ -17,6 +17,19 @@ public record Tile(int row, int col) {
         }
     }
 
+    public static Tile fromSquare(int square) {
+        return new Tile(square / OthelloBoard.getBoardSize(), square % OthelloBoard.getBoardSize());
+    }
+
+    public int square() {
+        return row * OthelloBoard.getBoardSize() + col;
+    }
+
+    // maps the tile onto a symmetric board, e.g. a move found on the canonical board is mapped back with the inverse
+    public Tile transformed(int transform) {
+        return fromSquare(Symmetry.transformSquare(square(), transform));
+    }
+
     public int row() {
         return row;
     }
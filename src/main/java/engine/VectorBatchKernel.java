@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package engine;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+// processes one board per long lane using the same shift and fill operations as the scalar move generator,
+// only loaded by BatchKernel.create when the jdk.incubator.vector module is available
+public class VectorBatchKernel implements BatchKernel {
+
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+    // an int lane for each long lane, used to store the disc counts
+    private static final VectorSpecies<Integer> INT_SPECIES =
+        VectorSpecies.of(int.class, VectorShape.forBitSize(SPECIES.vectorBitSize() / 2));
+
+    private static LongVector shiftRaw(LongVector v, int amount) {
+        return amount > 0 ? v.lanewise(VectorOperators.LSHL, amount) : v.lanewise(VectorOperators.LSHR, -amount);
+    }
+
+    private static LongVector shift(LongVector v, int direction) {
+        return shiftRaw(v, OthelloBoard.SHIFTS[direction]).and(OthelloBoard.SHIFT_MASKS[direction]);
+    }
+
+    // kogge-stone occluded fill of the generators through the propagators, as in OthelloBoard.findLegalMoves
+    private static LongVector fill(LongVector gen, LongVector opponent, int direction) {
+        var amount = OthelloBoard.SHIFTS[direction];
+        var pro = opponent.and(OthelloBoard.SHIFT_MASKS[direction]);
+        gen = gen.or(pro.and(shiftRaw(gen, amount)));
+        pro = pro.and(shiftRaw(pro, amount));
+        gen = gen.or(pro.and(shiftRaw(gen, amount * 2)));
+        pro = pro.and(shiftRaw(pro, amount * 2));
+        return gen.or(pro.and(shiftRaw(gen, amount * 4)));
+    }
+
+    @Override
+    public void findLegalMoves(long[] own, long[] opponent, long[] moves, int count) {
+        var upper = SPECIES.loopBound(count);
+        for (var i = 0; i < upper; i += SPECIES.length()) {
+            var o = LongVector.fromArray(SPECIES, own, i);
+            var p = LongVector.fromArray(SPECIES, opponent, i);
+            var empty = o.or(p).not();
+
+            var m = LongVector.zero(SPECIES);
+            for (var direction = 0; direction < OthelloBoard.SHIFTS.length; direction++) {
+                var gen = fill(shift(o, direction).and(p), p, direction);
+                m = m.or(shift(gen, direction).and(empty));
+            }
+            m.intoArray(moves, i);
+        }
+        for (var i = upper; i < count; i++) {
+            moves[i] = OthelloBoard.findLegalMoves(own[i], opponent[i]);
+        }
+    }
+
+    @Override
+    public void makeMoves(long[] own, long[] opponent, long[] moveBits, long[] flips, int count) {
+        var zero = LongVector.zero(SPECIES);
+        var upper = SPECIES.loopBound(count);
+        for (var i = 0; i < upper; i += SPECIES.length()) {
+            var o = LongVector.fromArray(SPECIES, own, i);
+            var p = LongVector.fromArray(SPECIES, opponent, i);
+            var move = LongVector.fromArray(SPECIES, moveBits, i);
+
+            var f = zero;
+            for (var direction = 0; direction < OthelloBoard.SHIFTS.length; direction++) {
+                // the run of opponent discs leaving the move is flipped when one of our discs ends it
+                var run = fill(shift(move, direction).and(p), p, direction);
+                var bounded = shift(run, direction).and(o).compare(VectorOperators.NE, 0L);
+                f = f.or(zero.blend(run, bounded));
+            }
+
+            o.or(move).or(f).intoArray(own, i);
+            p.and(f.not()).intoArray(opponent, i);
+            f.intoArray(flips, i);
+        }
+        for (var i = upper; i < count; i++) {
+            var moveBit = moveBits[i];
+            var f = moveBit == 0 ? 0L : FlipTables.findFlips(Long.numberOfTrailingZeros(moveBit), own[i], opponent[i]);
+            own[i] |= moveBit | f;
+            opponent[i] &= ~f;
+            flips[i] = f;
+        }
+    }
+
+    @Override
+    public void countDiscs(long[] discs, int[] counts, int count) {
+        var upper = SPECIES.loopBound(count);
+        for (var i = 0; i < upper; i += SPECIES.length()) {
+            var x = LongVector.fromArray(SPECIES, discs, i);
+            // swar popcount, the incubator api has no lanewise bit count
+            x = x.sub(x.lanewise(VectorOperators.LSHR, 1).and(0x5555555555555555L));
+            x = x.and(0x3333333333333333L).add(x.lanewise(VectorOperators.LSHR, 2).and(0x3333333333333333L));
+            x = x.add(x.lanewise(VectorOperators.LSHR, 4)).and(0x0f0f0f0f0f0f0f0fL);
+            x = x.mul(0x0101010101010101L).lanewise(VectorOperators.LSHR, 56);
+            ((IntVector) x.castShape(INT_SPECIES, 0)).intoArray(counts, i);
+        }
+        for (var i = upper; i < count; i++) {
+            counts[i] = Long.bitCount(discs[i]);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package engine;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// processes the accumulator a vector of short lanes at a time, the products of the dot product are widened to int
+// lanes as they do not fit in a short, only loaded by NnueKernel.create when the jdk.incubator.vector module is available
+public class VectorNnueKernel implements NnueKernel {
+
+    private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+    // half as many int lanes in a vector of the same size
+    private static final VectorSpecies<Integer> INT_SPECIES = VectorSpecies.of(int.class, SPECIES.vectorShape());
+
+    @Override
+    public void add(short[] accumulator, short[] weights, int offset) {
+        var upper = SPECIES.loopBound(accumulator.length);
+        for (var i = 0; i < upper; i += SPECIES.length()) {
+            ShortVector.fromArray(SPECIES, accumulator, i)
+                .add(ShortVector.fromArray(SPECIES, weights, offset + i))
+                .intoArray(accumulator, i);
+        }
+        for (var i = upper; i < accumulator.length; i++) {
+            accumulator[i] += weights[offset + i];
+        }
+    }
+
+    @Override
+    public void subtract(short[] accumulator, short[] weights, int offset) {
+        var upper = SPECIES.loopBound(accumulator.length);
+        for (var i = 0; i < upper; i += SPECIES.length()) {
+            ShortVector.fromArray(SPECIES, accumulator, i)
+                .sub(ShortVector.fromArray(SPECIES, weights, offset + i))
+                .intoArray(accumulator, i);
+        }
+        for (var i = upper; i < accumulator.length; i++) {
+            accumulator[i] -= weights[offset + i];
+        }
+    }
+
+    @Override
+    public int dot(short[] accumulator, short clip, short[] weights, int offset) {
+        var sums = IntVector.zero(INT_SPECIES);
+        var upper = SPECIES.loopBound(accumulator.length);
+        for (var i = 0; i < upper; i += SPECIES.length()) {
+            var activations = ShortVector.fromArray(SPECIES, accumulator, i).max((short) 0).min(clip);
+            var w = ShortVector.fromArray(SPECIES, weights, offset + i);
+            // the low and high halves of the lanes
+            for (var part = 0; part < 2; part++) {
+                var a = (IntVector) activations.convert(VectorOperators.S2I, part);
+                var b = (IntVector) w.convert(VectorOperators.S2I, part);
+                sums = sums.add(a.mul(b));
+            }
+        }
+        var sum = sums.reduceLanes(VectorOperators.ADD);
+        for (var i = upper; i < accumulator.length; i++) {
+            var activation = Math.max(0, Math.min(clip, accumulator[i]));
+            sum += activation * weights[offset + i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// young brothers wait: parallel alpha-beta on a fork/join pool, each node searches its eldest child first and
+// then forks the younger siblings with the window the eldest left, cancelling them once one of them cuts off
+// the search is deterministic, it does not share a transposition table or history between threads and the
+// siblings are combined in move order, so the score and node count are the same for any number of threads
+public final class YbwcSearch {
+
+    private static final int INF = Score.INF;
+    // nodes at or below this depth are searched serially by the task that reaches them
+    private static final int SPLIT_DEPTH = 3;
+    private static final int CANCEL_CHECK_MASK = (1 << 10) - 1;
+    // the move buffers of the serial searches by remaining depth, one set per worker thread, a serial search never
+    // joins another task so its thread cannot start a second one while it uses them
+    private static final ThreadLocal<int[][]> SERIAL_MOVES = ThreadLocal.withInitial(() -> new int[SPLIT_DEPTH + 1][64]);
+
+    // the best move is the square of the best root move, or -1 if the side to move has no moves
+    public record Result(int bestMove, int heuristic, long nodes, long timeTaken) {
+    }
+
+    private final ForkJoinPool pool;
+
+    public YbwcSearch(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public Result search(OthelloBoard board, int depth) {
+        return search(board, depth, -INF, INF);
+    }
+
+    public Result search(OthelloBoard board, int depth, int alpha, int beta) {
+        var startTime = System.nanoTime();
+        var task = new SearchTask(null, OthelloBoard.from(board), depth, alpha, beta);
+        var heuristic = pool.invoke(task);
+        return new Result(task.bestMove, heuristic, task.nodes, System.nanoTime() - startTime);
+    }
+
+    // writes the moves to the buffer in square priority order, a fixed order keeps the search deterministic
+    private static int orderMoves(long moves, int[] buffer) {
+        var count = 0;
+        for (; moves != 0; moves = OthelloBoard.removeFirstMove(moves)) {
+            var move = OthelloBoard.firstMove(moves);
+            var i = count++;
+            while (i > 0 && MoveOrdering.squarePriority(buffer[i - 1]) < MoveOrdering.squarePriority(move)) {
+                buffer[i] = buffer[i - 1];
+                i--;
+            }
+            buffer[i] = move;
+        }
+        return count;
+    }
+
+    private static class SearchTask extends RecursiveTask<Integer> {
+
+        private final SearchTask parent;
+        private final OthelloBoard board;
+        private final int depth;
+        private final int alpha;
+        private final int beta;
+        // set when an elder sibling cut off, the result of the task is then discarded
+        private volatile boolean abandoned = false;
+        // the nodes of this subtree, excluding the subtrees of cancelled siblings so the count is reproducible
+        private long nodes = 0;
+        private int bestMove = -1;
+
+        SearchTask(SearchTask parent, OthelloBoard board, int depth, int alpha, int beta) {
+            this.parent = parent;
+            this.board = board;
+            this.depth = depth;
+            this.alpha = alpha;
+            this.beta = beta;
+        }
+
+        private boolean isAbandoned() {
+            for (var task = this; task != null; task = task.parent) {
+                if (task.abandoned) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        protected Integer compute() {
+            // a sibling cancelled before it started does not need to search at all
+            if (isAbandoned()) {
+                return 0;
+            }
+            if (depth <= SPLIT_DEPTH) {
+                return searchSerial(SERIAL_MOVES.get(), depth, alpha, beta);
+            }
+
+            var moves = board.findLegalMoves();
+
+            // skip the turn when we cannot expand node's children, the skip is restored before we return as the
+            // eldest brother shares its parent's board
+            var passed = moves == 0;
+            if (passed) {
+                board.skipTurn();
+                moves = board.findLegalMoves();
+            }
+            try {
+                return moves == 0 ? OthelloAgent.findFinalScore(board) : searchSplit(moves, passed);
+            } finally {
+                if (passed) {
+                    board.skipTurn();
+                }
+            }
+        }
+
+        // the moves of a node above the split depth are kept until its siblings are joined, and joining may run
+        // other tasks on this thread, so they are not in the thread's buffers
+        private int searchSplit(long moves, boolean passed) {
+            var ordered = new int[OthelloBoard.countMoves(moves)];
+            var count = orderMoves(moves, ordered);
+
+            // black is the maximizer and white is the minimizer
+            var maximizer = board.isBlackMove();
+            var alpha = this.alpha;
+            var beta = this.beta;
+
+            // the eldest brother is searched first, by this thread on this board, to narrow the window for its
+            // siblings, the moves after a pass are the opponent's so none of them is this node's best move
+            var flips = board.makeMove(ordered[0]);
+            var eldest = new SearchTask(this, board, depth - 1, alpha, beta);
+            int heuristic = eldest.compute();
+            board.unmakeMove(ordered[0], flips);
+            nodes += eldest.nodes + 1;
+            if (!passed) {
+                bestMove = ordered[0];
+            }
+            if (maximizer) {
+                alpha = Math.max(alpha, heuristic);
+            } else {
+                beta = Math.min(beta, heuristic);
+            }
+            if (alpha >= beta || count == 1 || isAbandoned()) {
+                return maximizer ? alpha : beta;
+            }
+
+            // the younger brothers wait for the eldest, then all get the same window so their results do not
+            // depend on which of them finish first
+            List<SearchTask> tasks = new ArrayList<>();
+            for (var i = 1; i < count; i++) {
+                var task = new SearchTask(this, board.makeMoved(ordered[i]), depth - 1, alpha, beta);
+                task.fork();
+                tasks.add(task);
+            }
+
+            // siblings are combined in move order, and the ones after a cutoff are cancelled and not counted
+            var cutoff = false;
+            for (var i = 0; i < tasks.size(); i++) {
+                var task = tasks.get(i);
+                if (cutoff) {
+                    task.abandoned = true;
+                    task.join();
+                    continue;
+                }
+
+                heuristic = task.join();
+                nodes += task.nodes + 1;
+                if (maximizer) {
+                    if (heuristic > alpha && !passed) {
+                        bestMove = ordered[i + 1];
+                    }
+                    alpha = Math.max(alpha, heuristic);
+                } else {
+                    if (heuristic < beta && !passed) {
+                        bestMove = ordered[i + 1];
+                    }
+                    beta = Math.min(beta, heuristic);
+                }
+                cutoff = alpha >= beta;
+                if (cutoff) {
+                    for (var j = i + 1; j < tasks.size(); j++) {
+                        tasks.get(j).abandoned = true;
+                    }
+                }
+            }
+            return maximizer ? alpha : beta;
+        }
+
+        // fail-hard alpha-beta on the task's board, the board is restored to its original state before returning
+        private int searchSerial(int[][] buffers, int depth, int alpha, int beta) {
+            // a cancelled search unwinds as soon as it notices, its result is never used
+            if (depth == 0 || ((nodes & CANCEL_CHECK_MASK) == 0 && isAbandoned())) {
+                return OthelloAgent.findHeuristic(board);
+            }
+
+            var moves = board.findLegalMoves();
+
+            // skip the turn when we cannot expand node's children, the skip is restored before we return
+            var passed = moves == 0;
+            if (passed) {
+                board.skipTurn();
+                moves = board.findLegalMoves();
+            }
+
+            int heuristic;
+            if (moves == 0) {
+                heuristic = OthelloAgent.findFinalScore(board);
+            } else {
+                var ordered = buffers[depth];
+                var count = orderMoves(moves, ordered);
+
+                var maximizer = board.isBlackMove();
+                for (var i = 0; i < count; i++) {
+                    var move = ordered[i];
+                    var flips = board.makeMove(move);
+                    nodes++;
+
+                    var childHeuristic = searchSerial(buffers, depth - 1, alpha, beta);
+                    board.unmakeMove(move, flips);
+
+                    // only the moves of the task's own node are candidates for its best move, and not after a pass
+                    var isBestCandidate = depth == this.depth && !passed;
+                    if (maximizer) {
+                        if (isBestCandidate && (bestMove == -1 || childHeuristic > alpha)) {
+                            bestMove = move;
+                        }
+                        alpha = Math.max(alpha, childHeuristic);
+                    } else {
+                        if (isBestCandidate && (bestMove == -1 || childHeuristic < beta)) {
+                            bestMove = move;
+                        }
+                        beta = Math.min(beta, childHeuristic);
+                    }
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+                heuristic = maximizer ? alpha : beta;
+            }
+
+            if (passed) {
+                board.skipTurn();
+            }
+            return heuristic;
+        }
+    }
+
+    // usage: YbwcSearch [depth] [threads], searches the opening position and prints the score and node count
+    public static void main(String[] args) {
+        var depth = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        var threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        var pool = new ForkJoinPool(threads);
+        var search = new YbwcSearch(pool);
+        var board = OthelloBoard.initial();
+        for (var d = 1; d <= depth; d++) {
+            var result = search.search(board, d);
+            System.out.printf("depth %2d: best move %s, score %.4f, nodes %d, %d ms%n", d,
+                result.bestMove() >= 0 ? Tile.fromSquare(result.bestMove()) : "none", Score.toFloat(result.heuristic()),
+                result.nodes(), result.timeTaken() / 1_000_000);
+        }
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package engine;
+
+public final class Zobrist {
+
+    // the keys are generated from a fixed seed so hashes are the same across runs and processes
+    private static final long SEED = 0x4f7468656c6c6f42L;
+    private static final long[] BLACK_KEYS = new long[64];
+    private static final long[] WHITE_KEYS = new long[64];
+    // xor of the black and white key for a square, applied when a disc on the square changes color
+    private static final long[] FLIP_KEYS = new long[64];
+    private static final long BLACK_MOVE_KEY;
+
+    static {
+        var state = new long[]{SEED};
+        for (var square = 0; square < 64; square++) {
+            BLACK_KEYS[square] = nextKey(state);
+            WHITE_KEYS[square] = nextKey(state);
+            FLIP_KEYS[square] = BLACK_KEYS[square] ^ WHITE_KEYS[square];
+        }
+        BLACK_MOVE_KEY = nextKey(state);
+    }
+
+    private Zobrist() {
+    }
+
+    // splitmix64, which fills all 64 bits of each key
+    private static long nextKey(long[] state) {
+        var z = (state[0] += 0x9e3779b97f4a7c15L);
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    public static long hash(long blackDiscs, long whiteDiscs, boolean blackMove) {
+        var hash = blackMove ? BLACK_MOVE_KEY : 0L;
+        for (var discs = blackDiscs; discs != 0; discs &= discs - 1) {
+            hash ^= BLACK_KEYS[Long.numberOfTrailingZeros(discs)];
+        }
+        for (var discs = whiteDiscs; discs != 0; discs &= discs - 1) {
+            hash ^= WHITE_KEYS[Long.numberOfTrailingZeros(discs)];
+        }
+        return hash;
+    }
+
+    public static long squareKey(int square, boolean black) {
+        return black ? BLACK_KEYS[square] : WHITE_KEYS[square];
+    }
+
+    public static long turnKey() {
+        return BLACK_MOVE_KEY;
+    }
+
+    // the key change for placing a disc on the square and flipping the discs, not including the change in turn
+    public static long moveKey(int square, long flips, boolean black) {
+        var key = squareKey(square, black);
+        for (; flips != 0; flips &= flips - 1) {
+            key ^= FLIP_KEYS[Long.numberOfTrailingZeros(flips)];
+        }
+        return key;
+    }
+}
@@ -10,8 +10,6 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
 
-import java.util.List;
-
 @Data
 @ToString
 @EqualsAndHashCode
@@ -22,15 +20,11 @@ public class Game {
     @EqualsAndHashCode.Exclude
     @ToString.Exclude
     private OthelloBoard board;
-    @EqualsAndHashCode.Exclude
-    @ToString.Exclude
-    private List<Tile> currPotentialMoves;
 
     public Game(OthelloBoard board, Player blackPlayer, Player whitePlayer) {
         this.board = board;
         this.blackPlayer = blackPlayer;
         this.whitePlayer = whitePlayer;
-        this.currPotentialMoves = null;
     }
 
     public static Game start(Player blackPlayer, Player whitePlayer) {
@@ -38,9 +32,12 @@ public class Game {
     }
 
     public static Game from(Game game) {
-        var copiedGame = new Game(OthelloBoard.from(game.board), game.blackPlayer, game.whitePlayer);
-        copiedGame.currPotentialMoves = game.currPotentialMoves;
-        return copiedGame;
+        return new Game(OthelloBoard.from(game.board), game.blackPlayer, game.whitePlayer);
+    }
+
+    // identifies the game across its copies, the agent calculations for the game are dispatched under this key
+    public String getKey() {
+        return "game-" + blackPlayer.getId() + "-" + whitePlayer.getId();
     }
 
     public Player getCurrentPlayer() {
@@ -63,27 +60,24 @@ public class Game {
         return whitePlayer.isBot() || blackPlayer.isBot();
     }
 
-    public List<Tile> findPotentialMoves() {
-        if (currPotentialMoves != null) {
-            return currPotentialMoves;
-        }
-        var potentialMoves = board.findPotentialMoves();
-        currPotentialMoves = potentialMoves;
-        return potentialMoves;
+    public long findLegalMoves() {
+        return board.findLegalMoves();
+    }
+
+    public boolean isLegalMove(Tile move) {
+        return board.isLegalMove(move);
     }
 
     public void makeMove(Tile move) {
         board.makeMove(move);
-        currPotentialMoves = null;
 
-        if (findPotentialMoves().isEmpty()) {
+        if (findLegalMoves() == 0) {
             board.skipTurn();
-            currPotentialMoves = null;
         }
     }
 
     public boolean isOver() {
-        return findPotentialMoves().isEmpty();
+        return findLegalMoves() == 0;
     }
 
     public boolean isBlackMove() {
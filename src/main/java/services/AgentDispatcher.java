@@ -4,71 +4,391 @@
 
 package services;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import engine.Evaluator;
+import engine.HeuristicEvaluator;
 import engine.OthelloAgent;
 import engine.OthelloBoard;
+import engine.PatternEvaluator;
 import engine.Tile;
 import lombok.AllArgsConstructor;
 
-import java.util.List;
-import java.util.StringJoiner;
+import java.io.IOException;
+import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 
 import static utils.LogUtils.LOGGER;
 
 @AllArgsConstructor
 public class AgentDispatcher {
+    // the depth the opponent's replies are ranked at before pondering them
+    private static final int PONDER_RANK_DEPTH = 3;
+    // how long a search waits for the agent that served its key last to stop pondering, before taking another
+    private static final long AFFINITY_WAIT_MILLIS = 50;
+
     private final ExecutorService cpuBndExecutor;
     private final BlockingQueue<OthelloAgent> agentsQueue;
+    // the number of threads searches may use between them, each search gets an even share of them
+    private final int maxThreads;
+    // runs the ponders apart from the searches so a ponder never holds up a search's thread, a ponder only uses the
+    // cores no search needs: it does not start while a search runs and it is cancelled as soon as one starts
+    private final ExecutorService ponderExecutor;
+    // the searches started and not yet finished, including those waiting for a ponder to give back an agent
+    private final AtomicInteger activeSearches = new AtomicInteger();
+    // the ponders holding an agent, each of them searches on one thread
+    private final AtomicInteger activePonders = new AtomicInteger();
+    // the searches queued or running for each key, so everything searched for a game can be cancelled at once
+    private final Map<String, Set<SearchFuture<?>>> searches = new ConcurrentHashMap<>();
+    // the latest ponder for each key, at most one per key
+    private final Map<String, Ponder> ponders = new ConcurrentHashMap<>();
+    private final AtomicInteger ponderHits = new AtomicInteger();
+    private final AtomicInteger ponderMisses = new AtomicInteger();
+    // the ponder running on each agent, so a search can take back the agent that last served its key
+    private final Map<OthelloAgent, SearchFuture<Void>> ponderingAgents = new ConcurrentHashMap<>();
+    // the agent that last searched for each key, its transposition table still holds that game's positions
+    private final Cache<String, OthelloAgent> affinity = Caffeine.newBuilder()
+        .maximumSize(10000)
+        .expireAfterAccess(1, TimeUnit.HOURS)
+        .build();
+    private final AtomicInteger affinityHits = new AtomicInteger();
+    private final AtomicInteger affinityMisses = new AtomicInteger();
 
-    public AgentDispatcher(ThreadPoolExecutor cpuBndExecutor) {
-        this(cpuBndExecutor, new LinkedBlockingQueue<>());
+    public AgentDispatcher(ThreadPoolExecutor cpuBndExecutor, ExecutorService helperExecutor,
+                           ExecutorService ponderExecutor, int maxThreads) {
+        this(cpuBndExecutor, new LinkedBlockingQueue<>(), maxThreads, ponderExecutor);
 
         var agentCount = cpuBndExecutor.getMaximumPoolSize();
         assert agentCount > 0;
 
+        var evaluator = loadEvaluator();
         for (int i = 0; i < agentCount; i++) {
-            agentsQueue.add(new OthelloAgent());
+            var agent = new OthelloAgent();
+            agent.setHelperExecutor(helperExecutor);
+            agent.setEvaluator(evaluator);
+            agentsQueue.add(agent);
         }
     }
 
-    public Future<List<Tile.Move>> findMoves(OthelloBoard board, int depth) {
-        CompletableFuture<List<Tile.Move>> future = new CompletableFuture<>();
-        cpuBndExecutor.submit(() -> {
-            try {
-                var agent = agentsQueue.take();
-                LOGGER.info("Started agent ranked moves calculation of depth {}", depth);
+    // the agents share the pattern weights when they are bundled, otherwise they fall back to the heuristic
+    private static Evaluator loadEvaluator() {
+        try {
+            var evaluator = PatternEvaluator.loadResource(PatternEvaluator.DEFAULT_WEIGHTS);
+            if (evaluator != null) {
+                LOGGER.info("Loaded pattern weights from {}", PatternEvaluator.DEFAULT_WEIGHTS);
+                return evaluator;
+            }
+            LOGGER.warn("No pattern weights at {}, using the heuristic evaluator", PatternEvaluator.DEFAULT_WEIGHTS);
+        } catch (IOException ex) {
+            LOGGER.warn("Failed to load the pattern weights, using the heuristic evaluator", ex);
+        }
+        return HeuristicEvaluator.INSTANCE;
+    }
 
-                var moves = agent.findRankedMoves(board, depth);
-                agentsQueue.add(agent);
+    // a search that can be cancelled while it is queued or running, cancelling a running search interrupts the
+    // thread searching, which the agent checks every few thousand nodes
+    private static class SearchFuture<T> extends CompletableFuture<T> {
+        private final String key;
+        private Thread thread = null;
+        // counted down once the task is done with its agent, unlike the future which completes on a cancel
+        private final CountDownLatch finished = new CountDownLatch(1);
 
-                LOGGER.info("Finished agent ranked moves calculation of depth {}: {}", depth,
-                    moves.stream().map(Tile.Move::toString).collect(Collectors.joining(", ")));
-                future.complete(moves);
-            } catch (Exception ex) {
-                LOGGER.warn("Error occurred while processing a find moves event ", ex);
+        SearchFuture(String key) {
+            this.key = key;
+        }
+
+        // returns false if the search was cancelled before it started
+        private synchronized boolean start() {
+            if (isCancelled()) {
+                return false;
+            }
+            thread = Thread.currentThread();
+            return true;
+        }
+
+        // the interrupt is cleared under the lock, so a cancel that comes after the search cannot interrupt
+        // whatever the pool thread runs next
+        private synchronized void finish() {
+            thread = null;
+            Thread.interrupted();
+            finished.countDown();
+        }
+
+        // returns false if the task is still running after the timeout
+        private boolean awaitFinish(long timeout, TimeUnit unit) throws InterruptedException {
+            return finished.await(timeout, unit);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            var cancelled = super.cancel(mayInterruptIfRunning);
+            synchronized (this) {
+                if (thread != null) {
+                    thread.interrupt();
+                }
+            }
+            return cancelled;
+        }
+    }
+
+    // the bot's best move after each reply the opponent may make, searched while the opponent is thinking
+    private record Ponder(SearchFuture<Void> future, int depth, Map<OthelloBoard, Tile.Move> replies) {
+    }
+
+    // counts the search as load and takes the cores back from the ponders, a ponder that starts after this sees
+    // the search and gives up, and one that started before it is cancelled here
+    private void startSearch() {
+        activeSearches.incrementAndGet();
+        stopPondering();
+    }
+
+    // splits the threads between the searches running now including this one, so a search on an idle bot
+    // gets all of them and searches slow down gracefully to one thread each under load
+    private int acquireThreads() {
+        return Math.max(1, maxThreads / Math.max(1, activeSearches.get()));
+    }
+
+    private void finishSearch() {
+        activeSearches.decrementAndGet();
+    }
+
+    // cancels every search queued or running for the key, their futures complete with a cancellation exception
+    public void cancel(String key) {
+        var ponder = ponders.remove(key);
+        if (ponder != null) {
+            ponder.future.cancel(true);
+        }
+        affinity.invalidate(key);
+
+        List<SearchFuture<?>> cancelled = new ArrayList<>();
+        searches.computeIfPresent(key, (k, futures) -> {
+            cancelled.addAll(futures);
+            return futures;
+        });
+        for (var future : cancelled) {
+            future.cancel(true);
+        }
+        if (!cancelled.isEmpty()) {
+            LOGGER.info("Cancelled {} agent calculations for {}", cancelled.size(), key);
+        }
+    }
+
+    private void register(SearchFuture<?> future) {
+        searches.compute(future.key, (k, futures) -> {
+            if (futures == null) {
+                futures = new HashSet<>();
             }
+            futures.add(future);
+            return futures;
+        });
+    }
+
+    private void unregister(SearchFuture<?> future) {
+        searches.computeIfPresent(future.key, (k, futures) -> {
+            futures.remove(future);
+            return futures.isEmpty() ? null : futures;
         });
-        return future;
     }
 
-    public Future<Tile.Move> findMove(OthelloBoard board, int depth) {
-        CompletableFuture<Tile.Move> future = new CompletableFuture<>();
+    // runs the search on a borrowed agent, the future is always completed and the agent is always returned
+    private <T> Future<T> dispatch(String key, BiFunction<OthelloAgent, Integer, T> search) {
+        var future = new SearchFuture<T>(key);
+        register(future);
         cpuBndExecutor.submit(() -> {
+            OthelloAgent agent = null;
             try {
-                var agent = agentsQueue.take();
+                if (!future.start()) {
+                    return;
+                }
+                startSearch();
+                T result;
+                try {
+                    agent = acquireAgent(key);
+                    result = search.apply(agent, acquireThreads());
+                } finally {
+                    finishSearch();
+                    // the agent goes back before the future completes, so a search that follows straight on
+                    // for the same key finds it free
+                    if (agent != null) {
+                        agentsQueue.add(agent);
+                        agent = null;
+                    }
+                }
+                future.complete(result);
+            } catch (InterruptedException ex) {
+                // only a cancelled search is interrupted, and its future is already complete
+                future.completeExceptionally(ex);
+            } catch (Exception ex) {
+                LOGGER.warn("Error occurred while processing an agent calculation ", ex);
+                future.completeExceptionally(ex);
+            } finally {
+                future.finish();
+                if (agent != null) {
+                    agentsQueue.add(agent);
+                }
+                unregister(future);
+            }
+        });
+        return future;
+    }
+
+    public int getAffinityHits() {
+        return affinityHits.get();
+    }
+
+    // the agents that are neither searching nor pondering
+    public int getFreeAgents() {
+        return agentsQueue.size();
+    }
+
+    // takes the agent that last searched for the key so its table is warm, or any free agent if that one is busy
+    private OthelloAgent acquireAgent(String key) throws InterruptedException {
+        var preferred = affinity.getIfPresent(key);
+        if (preferred != null) {
+            // a ponder gives its agent back within a few thousand nodes, which is worth the wait for a warm table
+            var ponder = ponderingAgents.get(preferred);
+            if (ponder != null) {
+                ponder.cancel(true);
+                ponder.awaitFinish(AFFINITY_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            if (agentsQueue.remove(preferred)) {
+                var hits = affinityHits.incrementAndGet();
+                LOGGER.info("Agent affinity hit for {}, hit rate {}/{}", key, hits, hits + affinityMisses.get());
+                return preferred;
+            }
+            affinityMisses.incrementAndGet();
+        }
+
+        // the ponders were cancelled when the search started, so an agent a ponder holds comes back shortly
+        var agent = agentsQueue.take();
+        affinity.put(key, agent);
+        return agent;
+    }
+
+    private void stopPondering() {
+        for (var ponder : ponders.values()) {
+            ponder.future.cancel(true);
+        }
+    }
 
-                LOGGER.info("Started agent best move calculation of depth {}", depth);
+    // searches the best move for each reply to the board in the background, the best move is then found
+    // immediately by findMove if the opponent makes one of those replies
+    // the ponder takes an agent only if one is free and no search is running, and there are never more ponders than
+    // threads, it gives the agent back as soon as a search starts
+    public Future<Void> ponder(String key, OthelloBoard board, int depth) {
+        var ponderBoard = OthelloBoard.from(board);
+        var future = new SearchFuture<Void>(key);
+        var ponder = new Ponder(future, depth, new ConcurrentHashMap<>());
 
-                var move = agent.findBestMove(board, depth);
-                agentsQueue.add(agent);
+        var previous = ponders.put(key, ponder);
+        if (previous != null) {
+            previous.future.cancel(true);
+        }
+
+        ponderExecutor.submit(() -> {
+            OthelloAgent agent = null;
+            try {
+                if (!future.start() || (agent = acquirePonderAgent(key)) == null) {
+                    future.cancel(false);
+                    return;
+                }
+                ponderingAgents.put(agent, future);
+                LOGGER.info("Started pondering of depth {} for {}", depth, key);
 
-                LOGGER.info("Finished agent best move calculation of depth {}: {}", depth, move);
-                future.complete(move);
+                // the replies the agent thinks are best are the most likely, so they are searched first
+                var replies = agent.findRankedMoves(ponderBoard, Math.min(depth, PONDER_RANK_DEPTH));
+                for (var reply : replies) {
+                    if (future.isCancelled()) {
+                        break;
+                    }
+                    // the position is stored as the game has it after the reply, and if the bot has to pass
+                    // there is no move to search for it
+                    var replyBoard = ponderBoard.makeMoved(reply.tile());
+                    if (replyBoard.findLegalMoves() == 0) {
+                        continue;
+                    }
+                    var move = agent.findBestMove(replyBoard, depth);
+                    // a search cut short by the cancellation is shallower than the one findMove would do
+                    if (future.isCancelled()) {
+                        break;
+                    }
+                    ponder.replies.put(replyBoard, move);
+                }
+
+                LOGGER.info("Finished pondering for {}, searched {} replies", key, ponder.replies.size());
+                future.complete(null);
             } catch (Exception ex) {
-                LOGGER.warn("Error occurred while processing a find move event ", ex);
+                LOGGER.warn("Error occurred while pondering ", ex);
+                future.completeExceptionally(ex);
+            } finally {
+                // the agent is back in the queue before it leaves the map and before the ponder finishes, so a
+                // search that no longer finds the ponder, or that waited for it to finish, finds the agent free
+                if (agent != null) {
+                    agentsQueue.add(agent);
+                    ponderingAgents.remove(agent, future);
+                    activePonders.decrementAndGet();
+                }
+                future.finish();
             }
         });
         return future;
     }
+
+    // the ponder prefers the agent that last searched for the key too, and never waits for one
+    // a search that starts after the check here cancels the ponder itself, as the ponder is already registered
+    private OthelloAgent acquirePonderAgent(String key) {
+        if (activePonders.incrementAndGet() > maxThreads || activeSearches.get() > 0) {
+            activePonders.decrementAndGet();
+            return null;
+        }
+        var preferred = affinity.getIfPresent(key);
+        var agent = preferred != null && agentsQueue.remove(preferred) ? preferred : agentsQueue.poll();
+        if (agent == null) {
+            activePonders.decrementAndGet();
+            return null;
+        }
+        affinity.put(key, agent);
+        return agent;
+    }
+
+    // takes the ponder for the key, which is finished once the opponent has replied
+    private Tile.Move takePondered(String key, OthelloBoard board, int depth) {
+        var ponder = ponders.remove(key);
+        if (ponder == null) {
+            return null;
+        }
+        ponder.future.cancel(true);
+
+        var move = ponder.depth == depth ? ponder.replies.get(board) : null;
+        var hits = move != null ? ponderHits.incrementAndGet() : ponderHits.get();
+        var misses = move == null ? ponderMisses.incrementAndGet() : ponderMisses.get();
+        LOGGER.info("Ponder {} for {}, hit rate {}/{}", move != null ? "hit" : "miss", key, hits, hits + misses);
+        return move;
+    }
+
+    public Future<List<Tile.Move>> findMoves(String key, OthelloBoard board, int depth) {
+        return dispatch(key, (agent, threads) -> {
+            LOGGER.info("Started agent ranked moves calculation of depth {} on {} threads", depth, threads);
+            var moves = agent.findRankedMoves(board, depth, threads);
+            LOGGER.info("Finished agent ranked moves calculation of depth {}: {}", depth,
+                moves.stream().map(Tile.Move::toString).collect(Collectors.joining(", ")));
+            return moves;
+        });
+    }
+
+    public Future<Tile.Move> findMove(String key, OthelloBoard board, int depth) {
+        var pondered = takePondered(key, board, depth);
+        if (pondered != null) {
+            return CompletableFuture.completedFuture(pondered);
+        }
+        return dispatch(key, (agent, threads) -> {
+            LOGGER.info("Started agent best move calculation of depth {} on {} threads", depth, threads);
+            var move = agent.findBestMove(board, depth, threads);
+            LOGGER.info("Finished agent best move calculation of depth {}: {}", depth, move);
+            return move;
+        });
+    }
 }
@@ -23,9 +23,12 @@ public class GameService {
 
     private final LoadingCache<Long, Optional<Game>> games;
     private final StatsService statsService;
+    @Nullable
+    private final AgentDispatcher agentDispatcher;
 
-    public GameService(StatsService statsService) {
+    public GameService(StatsService statsService, @Nullable AgentDispatcher agentDispatcher) {
         this.statsService = statsService;
+        this.agentDispatcher = agentDispatcher;
         this.games = Caffeine.newBuilder()
             .initialCapacity(1000)
             .scheduler(Scheduler.systemScheduler())
@@ -108,6 +111,14 @@ public class GameService {
     public void deleteGame(Game game) {
         games.invalidate(game.getWhitePlayer().getId());
         games.invalidate(game.getBlackPlayer().getId());
+        cancelCalculations(game);
+    }
+
+    // the bot moves and analyses of a game that ended are never used, so they are cancelled to free the agents
+    private void cancelCalculations(Game game) {
+        if (agentDispatcher != null) {
+            agentDispatcher.cancel(game.getKey());
+        }
     }
 
     public boolean isPlaying(Player player) {
@@ -128,28 +139,26 @@ public class GameService {
                 throw new TurnException();
             }
 
-            var potentialMoves = game.findPotentialMoves();
-
-            // check if the move being requested is any of the potential moves, if so make the move
-            for (var potentialMove : potentialMoves) {
-                if (potentialMove.equals(move)) {
-                    // make the move by modifying the game's board state
-                    game.makeMove(potentialMove);
+            // check if the move being requested is in the legal move mask, if so make the move
+            if (!game.isLegalMove(move)) {
+                throw new InvalidMoveException();
+            }
 
-                    if (game.isOver()) {
-                        deleteGame(game);
-                        return Game.from(game);
-                    }
+            // make the move by modifying the game's board state
+            game.makeMove(move);
 
-                    return Game.from(game);
-                }
+            if (game.isOver()) {
+                deleteGame(game);
+                return Game.from(game);
             }
 
-            throw new InvalidMoveException();
+            return Game.from(game);
         }
     }
 
     private void onGameExpiry(Game game) {
+        cancelCalculations(game);
+
         // call the stats service to update the stats where the current player loses
         var forfeitResult = Game.Result.WinLoss(game.getOtherPlayer(), game.getCurrentPlayer());
         statsService.writeStats(forfeitResult);
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package engine;
+
+import org.junit.jupiter.api.Assertions;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+// the checks every evaluator with an accumulator or a weights file has to pass, shared by their tests
+final class EvaluatorChecks {
+
+    interface Writer {
+        void write(DataOutputStream output) throws IOException;
+    }
+
+    interface Reader {
+        Evaluator read(DataInputStream input) throws IOException;
+    }
+
+    private EvaluatorChecks() {
+    }
+
+    // plays random games, trying and taking back every move before one is played, and checks the accumulator
+    // against a full evaluation after each move and unmove
+    static void assertAccumulatorMatchesEvaluate(Evaluator evaluator, Random random, int games) {
+        var accumulator = evaluator.newAccumulator();
+        for (var game = 0; game < games; game++) {
+            var board = OthelloBoard.initial();
+            accumulator.reset(board);
+            for (var moves = board.findLegalMoves(); moves != 0; moves = board.findLegalMoves()) {
+                for (var tried = moves; tried != 0; tried = OthelloBoard.removeFirstMove(tried)) {
+                    var move = OthelloBoard.firstMove(tried);
+                    var blackMoved = board.isBlackMove();
+                    var flips = board.makeMove(move);
+                    accumulator.makeMove(move, flips, blackMoved);
+                    Assertions.assertEquals(evaluator.evaluate(board), accumulator.evaluate(board));
+                    board.unmakeMove(move, flips);
+                    accumulator.unmakeMove(move, flips, blackMoved);
+                }
+                Assertions.assertEquals(evaluator.evaluate(board), accumulator.evaluate(board));
+
+                var move = OthelloBoard.randomMove(random, moves);
+                var blackMoved = board.isBlackMove();
+                accumulator.makeMove(move, board.makeMove(move), blackMoved);
+                if (board.findLegalMoves() == 0) {
+                    board.skipTurn();
+                }
+            }
+            Assertions.assertEquals(evaluator.evaluate(board), accumulator.evaluate(board));
+        }
+    }
+
+    // writes the evaluator's weights, reads them back and checks both score random positions the same
+    static void assertWriteThenReadSameScores(Evaluator evaluator, Writer writer, Reader reader, Random random)
+        throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        writer.write(new DataOutputStream(bytes));
+        var read = reader.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        for (var i = 0; i < 20; i++) {
+            var board = RandomPositions.randomPosition(random, 5 + i * 2);
+            Assertions.assertEquals(evaluator.evaluate(board), read.evaluate(board));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package engine;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class TestBatchKernel {
+
+    // checks the kernel against the board methods on random disc layouts, with a count that leaves a partial tail
+    private static void assertMatchesBoard(BatchKernel kernel) {
+        var random = new Random(0);
+        var count = 1003;
+        var own = new long[count];
+        var opponent = new long[count];
+        for (var i = 0; i < count; i++) {
+            var occupied = random.nextLong() | random.nextLong();
+            own[i] = occupied & random.nextLong();
+            opponent[i] = occupied & ~own[i];
+        }
+        var initialOwn = own.clone();
+        var initialOpponent = opponent.clone();
+
+        var moves = new long[count];
+        kernel.findLegalMoves(own, opponent, moves, count);
+
+        var moveBits = new long[count];
+        for (var i = 0; i < count; i++) {
+            Assertions.assertEquals(OthelloBoard.findLegalMoves(own[i], opponent[i]), moves[i]);
+            moveBits[i] = Long.highestOneBit(moves[i]);
+        }
+
+        var flips = new long[count];
+        kernel.makeMoves(own, opponent, moveBits, flips, count);
+
+        var counts = new int[count];
+        kernel.countDiscs(own, counts, count);
+
+        for (var i = 0; i < count; i++) {
+            var expectedFlips = moveBits[i] == 0 ? 0L :
+                FlipTables.findFlips(Long.numberOfTrailingZeros(moveBits[i]), initialOwn[i], initialOpponent[i]);
+            Assertions.assertEquals(expectedFlips, flips[i]);
+            Assertions.assertEquals(initialOwn[i] | moveBits[i] | expectedFlips, own[i]);
+            Assertions.assertEquals(initialOpponent[i] & ~expectedFlips, opponent[i]);
+            Assertions.assertEquals(Long.bitCount(own[i]), counts[i]);
+        }
+    }
+
+    @Test
+    public void whenScalarKernel_matchesBoard() {
+        assertMatchesBoard(new ScalarBatchKernel());
+    }
+
+    @Test
+    public void whenCreatedKernel_matchesBoard() {
+        assertMatchesBoard(BatchKernel.create());
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package engine;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class TestEndgameSolver {
+
+    // the final disc difference for black by searching every line to the end of the game
+    private static int minimax(OthelloBoard board) {
+        var moves = board.findLegalMoves();
+        if (moves == 0) {
+            var skipped = board.skippedTurn();
+            if (skipped.findLegalMoves() == 0) {
+                return board.countDiscs(OthelloBoard.BLACK) - board.countDiscs(OthelloBoard.WHITE);
+            }
+            return minimax(skipped);
+        }
+        var best = board.isBlackMove() ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+        for (; moves != 0; moves = OthelloBoard.removeFirstMove(moves)) {
+            var score = minimax(board.makeMoved(OthelloBoard.firstMove(moves)));
+            best = board.isBlackMove() ? Math.max(best, score) : Math.min(best, score);
+        }
+        return best;
+    }
+
+    @Test
+    public void whenSolve_ifRandomPositions_matchesMinimax() {
+        var random = new Random(7);
+        var solver = new EndgameSolver();
+        for (var i = 0; i < 40; i++) {
+            // covers the specialised routines for the last empties as well as the general search
+            var board = RandomPositions.randomPosition(random, 1 + i % 9);
+
+            Assertions.assertEquals(minimax(board), solver.solve(board, Long.MAX_VALUE), BoardCodec.toText(board));
+        }
+    }
+
+    @Test
+    public void whenSolve_ifWindow_returnsBound() {
+        var random = new Random(11);
+        var solver = new EndgameSolver();
+        for (var i = 0; i < 10; i++) {
+            var board = RandomPositions.randomPosition(random, 10);
+            var score = minimax(board);
+
+            Assertions.assertTrue(solver.solve(board, score, score + 1, Long.MAX_VALUE) <= score);
+            Assertions.assertTrue(solver.solve(board, score - 1, score, Long.MAX_VALUE) >= score);
+            Assertions.assertEquals(score, solver.solve(board, score - 1, score + 1, Long.MAX_VALUE));
+        }
+    }
+
+    @Test
+    public void whenSolve_ifDeadlinePassed_notSolved() {
+        var board = RandomPositions.randomPosition(new Random(3), 24);
+
+        Assertions.assertEquals(EndgameSolver.NOT_SOLVED, new EndgameSolver().solve(board, 0L));
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package engine;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class TestFlipTables {
+
+    private static final int[][] DIRECTIONS = {{0, 1}, {0, -1}, {1, 0}, {-1, 0}, {-1, -1}, {-1, 1}, {1, -1}, {1, 1}};
+
+    // finds the flips by scanning each direction from the square, first to find a flank and then to collect the discs
+    private static long scanFlips(int square, long own, long opponent) {
+        var flips = 0L;
+        for (var direction : DIRECTIONS) {
+            var row = square / 8 + direction[0];
+            var col = square % 8 + direction[1];
+            var line = 0L;
+            while (OthelloBoard.inBounds(row, col) && (opponent & (1L << (row * 8 + col))) != 0) {
+                line |= 1L << (row * 8 + col);
+                row += direction[0];
+                col += direction[1];
+            }
+            if (OthelloBoard.inBounds(row, col) && (own & (1L << (row * 8 + col))) != 0) {
+                flips |= line;
+            }
+        }
+        return flips;
+    }
+
+    @Test
+    public void whenFindFlips_ifRandomDiscs_matchesScan() {
+        var random = new Random(0);
+        for (var i = 0; i < 100000; i++) {
+            var occupied = random.nextLong() | random.nextLong();
+            var own = occupied & random.nextLong();
+            var opponent = occupied & ~own;
+            var square = random.nextInt(64);
+
+            own &= ~(1L << square);
+            opponent &= ~(1L << square);
+
+            Assertions.assertEquals(scanFlips(square, own, opponent), FlipTables.findFlips(square, own, opponent));
+        }
+    }
+
+    @Test
+    public void whenFindFlips_ifGamePositions_matchesScan() {
+        var random = new Random(0);
+        for (var game = 0; game < 200; game++) {
+            var board = OthelloBoard.initial();
+            for (var moves = board.findLegalMoves(); moves != 0; moves = board.findLegalMoves()) {
+                var own = board.getDiscs(board.isBlackMove() ? OthelloBoard.BLACK : OthelloBoard.WHITE);
+                var opponent = board.getDiscs(board.isBlackMove() ? OthelloBoard.WHITE : OthelloBoard.BLACK);
+
+                // check every empty square, legal moves or not, in each position that occurs during the game
+                for (var square = 0; square < 64; square++) {
+                    if (((own | opponent) & (1L << square)) == 0) {
+                        Assertions.assertEquals(scanFlips(square, own, opponent), FlipTables.findFlips(square, own, opponent));
+                    }
+                }
+
+                board.makeMove(OthelloBoard.randomMove(random, moves));
+                if (board.findLegalMoves() == 0) {
+                    board.skipTurn();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package engine;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestMoveOrdering {
+
+    private static final int CORNER = 0;
+    private static final int X_SQUARE = 9;
+    private static final int EDGE = 2;
+    private static final int CENTER = 19;
+
+    private static int[] ordered(MoveOrdering ordering, long moves, int ttMove, int ply) {
+        var buffer = new int[64];
+        var scores = new int[64];
+        var count = ordering.orderMoves(moves, ttMove, ply, buffer, scores);
+        var result = new int[count];
+        for (var i = 0; i < count; i++) {
+            result[i] = MoveOrdering.nextMove(buffer, scores, i, count);
+        }
+        return result;
+    }
+
+    private static long mask(int... squares) {
+        var mask = 0L;
+        for (var square : squares) {
+            mask |= 1L << square;
+        }
+        return mask;
+    }
+
+    @Test
+    public void whenOrderMoves_ifNoHistory_cornersFirstXSquaresLast() {
+        var ordering = new MoveOrdering();
+        ordering.startSearch();
+
+        var moves = ordered(ordering, mask(CORNER, X_SQUARE, EDGE, CENTER), MoveOrdering.NO_MOVE, 0);
+
+        Assertions.assertArrayEquals(new int[]{CORNER, EDGE, CENTER, X_SQUARE}, moves);
+    }
+
+    @Test
+    public void whenOrderMoves_ifTTMoveAndKiller_searchedFirst() {
+        var ordering = new MoveOrdering();
+        ordering.startSearch();
+        ordering.onCutoff(X_SQUARE, 3, 4, 2);
+
+        var moves = ordered(ordering, mask(CORNER, X_SQUARE, EDGE, CENTER), CENTER, 3);
+        Assertions.assertArrayEquals(new int[]{CENTER, X_SQUARE, CORNER, EDGE}, moves);
+
+        // killers only apply at their own ply, while the history of the move still raises it above the rest
+        moves = ordered(ordering, mask(CORNER, X_SQUARE, EDGE), MoveOrdering.NO_MOVE, 2);
+        Assertions.assertArrayEquals(new int[]{X_SQUARE, CORNER, EDGE}, moves);
+
+        Assertions.assertEquals(1, ordering.getCutoffs());
+        Assertions.assertEquals(0f, ordering.getFirstMoveCutoffRate());
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package engine;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+public class TestNnueEvaluator {
+
+    private static short[] randomShorts(Random random, int length, int max) {
+        var values = new short[length];
+        for (var i = 0; i < length; i++) {
+            values[i] = (short) (random.nextInt(2 * max + 1) - max);
+        }
+        return values;
+    }
+
+    private static NnueEvaluator randomEvaluator(Random random) {
+        var outputBiases = new int[NnueEvaluator.PHASES];
+        for (var i = 0; i < outputBiases.length; i++) {
+            outputBiases[i] = random.nextInt(1 << 20) - (1 << 19);
+        }
+        return new NnueEvaluator(
+            randomShorts(random, NnueEvaluator.INPUTS * NnueEvaluator.HIDDEN, NnueEvaluator.MAX_HIDDEN_WEIGHT),
+            randomShorts(random, NnueEvaluator.HIDDEN, NnueEvaluator.MAX_HIDDEN_WEIGHT),
+            randomShorts(random, NnueEvaluator.PHASES * NnueEvaluator.HIDDEN, 2000),
+            outputBiases);
+    }
+
+    @Test
+    public void whenVectorKernel_matchesScalarKernel() {
+        var random = new Random(3);
+        var scalar = new ScalarNnueKernel();
+        var vector = new VectorNnueKernel();
+        // a length that is not a multiple of any vector size leaves a partial tail, and the accumulator takes the
+        // whole short range so both kernels have to wrap the same way
+        for (var length : new int[]{NnueEvaluator.HIDDEN, 77, 5}) {
+            for (var round = 0; round < 100; round++) {
+                var weights = randomShorts(random, length + 13, Short.MAX_VALUE);
+                var expected = randomShorts(random, length, Short.MAX_VALUE);
+                var actual = expected.clone();
+
+                scalar.add(expected, weights, 13);
+                vector.add(actual, weights, 13);
+                Assertions.assertArrayEquals(expected, actual);
+                scalar.subtract(expected, weights, 5);
+                vector.subtract(actual, weights, 5);
+                Assertions.assertArrayEquals(expected, actual);
+                Assertions.assertEquals(
+                    scalar.dot(expected, NnueEvaluator.ACTIVATION_SCALE, weights, 7),
+                    vector.dot(actual, NnueEvaluator.ACTIVATION_SCALE, weights, 7));
+            }
+        }
+    }
+
+    @Test
+    public void whenShippedWeights_accumulatorStaysInShortRange() throws IOException {
+        var evaluator = NnueEvaluator.loadResource(NnueEvaluator.DEFAULT_WEIGHTS);
+        Assertions.assertNotNull(evaluator);
+        var weights = evaluator.getHiddenWeights();
+        var biases = evaluator.getHiddenBiases();
+
+        // each square adds its black weight, its white weight or nothing, the accumulator of any board, and of the
+        // boards between the updates of a move, is within the sums of the extremes of each square
+        for (var h = 0; h < NnueEvaluator.HIDDEN; h++) {
+            var max = (long) biases[h];
+            var min = (long) biases[h];
+            for (var square = 0; square < 64; square++) {
+                var black = weights[square * NnueEvaluator.HIDDEN + h];
+                var white = weights[(64 + square) * NnueEvaluator.HIDDEN + h];
+                max += Math.max(0, Math.max(black, white));
+                min += Math.min(0, Math.min(black, white));
+            }
+            Assertions.assertTrue(max <= Short.MAX_VALUE && min >= Short.MIN_VALUE, "hidden unit " + h);
+        }
+    }
+
+    @Test
+    public void whenQuantized_matchesFloatNetwork() {
+        var trainer = new NnueTrainer(new Random(11));
+        var evaluator = trainer.toEvaluator();
+
+        // the outputs are tens of discs, rounding the weights costs about a fifth of a disc on average
+        var random = new Random(13);
+        var totalError = 0.0;
+        for (var i = 0; i < 200; i++) {
+            var board = RandomPositions.randomPosition(random, 1 + random.nextInt(59));
+            var expected = trainer.predict(board);
+            var actual = Score.toFloat(evaluator.evaluate(board));
+            Assertions.assertEquals(expected, actual, 2f, BoardCodec.toText(board));
+            totalError += Math.abs(expected - actual);
+        }
+        Assertions.assertTrue(totalError / 200 < 0.5, "mean error " + totalError / 200);
+    }
+
+    @Test
+    public void whenAccumulate_ifMovesMadeAndUnmade_sameScoreAsEvaluate() {
+        var random = new Random(7);
+        EvaluatorChecks.assertAccumulatorMatchesEvaluate(randomEvaluator(random), random, 10);
+    }
+
+    @Test
+    public void whenWriteThenRead_sameScores() throws IOException {
+        var random = new Random(9);
+        var evaluator = randomEvaluator(random);
+        EvaluatorChecks.assertWriteThenReadSameScores(evaluator, evaluator::write, NnueEvaluator::read, random);
+    }
+}
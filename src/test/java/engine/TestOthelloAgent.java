@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package engine;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.concurrent.Executors;
+
+public class TestOthelloAgent {
+
+    private static OthelloBoard midgameBoard() {
+        var board = OthelloBoard.initial();
+        for (var move : new String[]{"d3", "c5", "f6", "f5", "e6", "e3", "c3", "f3", "c4", "b4"}) {
+            board.makeMove(Tile.fromNotation(move));
+        }
+        return board;
+    }
+
+    @Test
+    public void whenFindRankedMoves_rankEachMoveOnce() {
+        var agent = new OthelloAgent(1, 60000);
+        var board = midgameBoard();
+
+        var rankedMoves = agent.findRankedMoves(board, 4);
+
+        var tiles = new HashSet<Tile>();
+        for (var i = 0; i < rankedMoves.size(); i++) {
+            Assertions.assertTrue(board.isLegalMove(rankedMoves.get(i).tile()));
+            Assertions.assertTrue(tiles.add(rankedMoves.get(i).tile()));
+            if (i > 0) {
+                // black is to move, so the moves are ranked from highest to lowest
+                Assertions.assertTrue(rankedMoves.get(i - 1).heuristic() >= rankedMoves.get(i).heuristic());
+            }
+        }
+        Assertions.assertEquals(board.countPotentialMoves(OthelloBoard.BLACK), rankedMoves.size());
+    }
+
+    @Test
+    public void whenFindBestMove_matchesRankedMoves() {
+        var board = midgameBoard();
+
+        var rankedMoves = new OthelloAgent(1, 60000).findRankedMoves(board, 5);
+        var bestMove = new OthelloAgent(1, 60000).findBestMove(board, 5);
+
+        Assertions.assertEquals(rankedMoves.get(0).heuristic(), bestMove.heuristic());
+        // the board passed to the agent is never modified
+        Assertions.assertEquals(midgameBoard(), board);
+    }
+
+    @Test
+    public void whenFindBestMove_ifTimeUp_returnLastDepth() {
+        var board = midgameBoard();
+
+        var bestMove = new OthelloAgent(1, 0).findBestMove(board, 15);
+
+        Assertions.assertTrue(board.isLegalMove(bestMove.tile()));
+    }
+
+    @Test
+    public void whenFindRankedMoves_ifPvs_matchesAlphaBeta() {
+        var board = midgameBoard();
+
+        var expected = new OthelloAgent(1, 60000, OthelloAgent.Algorithm.ALPHA_BETA).findRankedMoves(board, 3);
+        var rankedMoves = new OthelloAgent(1, 60000, OthelloAgent.Algorithm.PVS).findRankedMoves(board, 3);
+
+        Assertions.assertEquals(expected.size(), rankedMoves.size());
+        for (var i = 0; i < expected.size(); i++) {
+            Assertions.assertEquals(expected.get(i).heuristic(), rankedMoves.get(i).heuristic());
+        }
+    }
+
+    @Test
+    public void whenFindRankedMoves_ifHelperThreads_rankEachMoveOnce() {
+        var executor = Executors.newFixedThreadPool(3);
+        try {
+            var agent = new OthelloAgent(1, 60000);
+            agent.setHelperExecutor(executor);
+            var board = midgameBoard();
+
+            var rankedMoves = agent.findRankedMoves(board, 6, 4);
+            // searching again reuses the helpers
+            var bestMove = agent.findBestMove(board, 6, 4);
+
+            var tiles = new HashSet<Tile>();
+            for (var move : rankedMoves) {
+                Assertions.assertTrue(board.isLegalMove(move.tile()));
+                Assertions.assertTrue(tiles.add(move.tile()));
+            }
+            Assertions.assertEquals(board.countPotentialMoves(OthelloBoard.BLACK), rankedMoves.size());
+            Assertions.assertTrue(board.isLegalMove(bestMove.tile()));
+            Assertions.assertEquals(midgameBoard(), board);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // black to move: e2 flips both white discs and ends the game 5-0, d3 and b3 flip one and leave white a disc
+    private static OthelloBoard wipeoutBoard() {
+        var black = 0L;
+        for (var square : new String[]{"b2", "d1"}) {
+            black |= 1L << Tile.fromNotation(square).square();
+        }
+        var white = 0L;
+        for (var square : new String[]{"c2", "d2"}) {
+            white |= 1L << Tile.fromNotation(square).square();
+        }
+        return OthelloBoard.of(black, white, true);
+    }
+
+    @Test
+    public void whenFindRankedMoves_ifMoveEndsGame_exactScoreRanksFirst() {
+        for (var algorithm : OthelloAgent.Algorithm.values()) {
+            var agent = new OthelloAgent(1, 60000, algorithm);
+            var board = wipeoutBoard();
+
+            var rankedMoves = agent.findRankedMoves(board, 4);
+
+            Assertions.assertEquals(3, rankedMoves.size());
+            Assertions.assertTrue(rankedMoves.get(0).tile().equalsNotation("e2"));
+            Assertions.assertEquals(Score.toFloat(Score.exact(5)), rankedMoves.get(0).heuristic());
+            for (var i = 1; i < rankedMoves.size(); i++) {
+                Assertions.assertFalse(Score.isExact(Math.round(rankedMoves.get(i).heuristic() * Score.SCALE)));
+            }
+        }
+    }
+
+    @Test
+    public void whenFindRankedMoves_ifEndgame_exactScores() {
+        var board = RandomPositions.randomPosition(new Random(5), 12);
+        var agent = new OthelloAgent(1, 60000);
+
+        var rankedMoves = agent.findRankedMoves(board, 5);
+        var bestMove = agent.findBestMove(board, 5);
+
+        var solver = new EndgameSolver();
+        for (var move : rankedMoves) {
+            var score = solver.solve(board.makeMoved(move.tile()), Long.MAX_VALUE);
+            Assertions.assertEquals(Score.toFloat(Score.exact(score)), move.heuristic());
+        }
+        Assertions.assertEquals(rankedMoves.get(0).heuristic(), bestMove.heuristic());
+        Assertions.assertEquals(OthelloBoard.countMoves(board.findLegalMoves()), rankedMoves.size());
+    }
+}
@@ -8,8 +8,12 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Random;
 
 public class TestOthelloBoard {
 
@@ -70,6 +74,33 @@ public class TestOthelloBoard {
         Assertions.assertEquals(expected, moves);
     }
 
+    @Test
+    public void whenIsLegalMove_success() {
+        Assertions.assertTrue(othelloBoard.isLegalMove(Tile.fromNotation("d3")));
+        Assertions.assertFalse(othelloBoard.isLegalMove(Tile.fromNotation("a1")));
+        Assertions.assertFalse(othelloBoard.isLegalMove(Tile.fromNotation("z9")));
+    }
+
+    @Test
+    public void whenIterateLegalMoves_visitEachOnce() {
+        // squares flanking along several directions should still only be visited once
+        othelloBoard.makeMove(Tile.fromNotation("d3"));
+        othelloBoard.makeMove(Tile.fromNotation("c5"));
+
+        var moves = othelloBoard.findLegalMoves();
+        var visited = 0L;
+        var count = 0;
+        for (; moves != 0; moves = OthelloBoard.removeFirstMove(moves)) {
+            var square = OthelloBoard.firstMove(moves);
+            Assertions.assertEquals(0L, visited & (1L << square));
+            visited |= 1L << square;
+            count++;
+        }
+        Assertions.assertEquals(othelloBoard.findLegalMoves(), visited);
+        Assertions.assertEquals(OthelloBoard.countMoves(visited), count);
+        Assertions.assertEquals(count, othelloBoard.findPotentialMoves().size());
+    }
+
     @Test
     public void whenCountPotentialMoves_success() {
         var whiteCount = othelloBoard.countPotentialMoves(OthelloBoard.WHITE);
@@ -86,5 +117,195 @@ public class TestOthelloBoard {
 
         Assertions.assertEquals(2, whiteCount);
         Assertions.assertEquals(2, blackCount);
+        Assertions.assertEquals(60, othelloBoard.countEmpty());
+    }
+
+    @Test
+    public void whenCountFrontier_success() {
+        Assertions.assertEquals(2, othelloBoard.countFrontierDiscs(OthelloBoard.BLACK));
+        Assertions.assertEquals(10, othelloBoard.countPotentialMobility(OthelloBoard.BLACK));
+
+        // fill the board except for a1, so only b1, a2 and b2 are frontier discs
+        for (var square = 1; square < 64; square++) {
+            othelloBoard.setSquare(square, OthelloBoard.WHITE);
+        }
+        Assertions.assertEquals(3, othelloBoard.countFrontierDiscs(OthelloBoard.WHITE));
+        Assertions.assertEquals(1, othelloBoard.countPotentialMobility(OthelloBoard.BLACK));
+        Assertions.assertEquals(0, othelloBoard.countPotentialMobility(OthelloBoard.WHITE));
+    }
+
+    // finds the legal moves by checking each empty square in each direction one step at a time
+    private static long scanLegalMoves(OthelloBoard board, byte color) {
+        var oppositeColor = color == OthelloBoard.BLACK ? OthelloBoard.WHITE : OthelloBoard.BLACK;
+        int[][] directions = {{0, 1}, {0, -1}, {1, 0}, {-1, 0}, {-1, -1}, {-1, 1}, {1, -1}, {1, 1}};
+
+        var moves = 0L;
+        for (var square = 0; square < 64; square++) {
+            if (board.getSquare(square) != OthelloBoard.EMPTY) {
+                continue;
+            }
+            for (var direction : directions) {
+                var row = square / 8 + direction[0];
+                var col = square % 8 + direction[1];
+                var count = 0;
+                while (OthelloBoard.inBounds(row, col) && board.getSquare(row, col) == oppositeColor) {
+                    row += direction[0];
+                    col += direction[1];
+                    count++;
+                }
+                if (count > 0 && OthelloBoard.inBounds(row, col) && board.getSquare(row, col) == color) {
+                    moves |= 1L << square;
+                }
+            }
+        }
+        return moves;
+    }
+
+    @Test
+    public void whenFindLegalMoves_matchesScan() {
+        var random = new Random(0);
+        for (var game = 0; game < 100; game++) {
+            var board = OthelloBoard.initial();
+            while (true) {
+                Assertions.assertEquals(scanLegalMoves(board, OthelloBoard.BLACK), board.findLegalMoves(OthelloBoard.BLACK));
+                Assertions.assertEquals(scanLegalMoves(board, OthelloBoard.WHITE), board.findLegalMoves(OthelloBoard.WHITE));
+
+                var moves = board.findPotentialMoves();
+                if (moves.isEmpty()) {
+                    board.skipTurn();
+                    moves = board.findPotentialMoves();
+                    if (moves.isEmpty()) {
+                        break;
+                    }
+                }
+                board.makeMove(moves.get(random.nextInt(moves.size())));
+            }
+        }
+    }
+
+    @Test
+    public void whenUnmakeMove_restoresBoard() {
+        var random = new Random(0);
+        for (var game = 0; game < 100; game++) {
+            var board = OthelloBoard.initial();
+            for (var moves = board.findLegalMoves(); moves != 0; moves = board.findLegalMoves()) {
+                // every legal move should be undone back to an identical board
+                for (var m = moves; m != 0; m = OthelloBoard.removeFirstMove(m)) {
+                    var before = OthelloBoard.from(board);
+                    var move = OthelloBoard.firstMove(m);
+                    var flips = board.makeMove(move);
+
+                    Assertions.assertNotEquals(0L, flips);
+                    Assertions.assertEquals(before.makeMoved(move), board);
+
+                    board.unmakeMove(move, flips);
+                    Assertions.assertEquals(before, board);
+                    Assertions.assertEquals(before.getHashKey(), board.getHashKey());
+                }
+
+                board.makeMove(OthelloBoard.randomMove(random, moves));
+                if (board.findLegalMoves() == 0) {
+                    board.skipTurn();
+                }
+            }
+        }
+    }
+
+    private static long recomputeHash(OthelloBoard board) {
+        return Zobrist.hash(board.getDiscs(OthelloBoard.BLACK), board.getDiscs(OthelloBoard.WHITE), board.isBlackMove());
+    }
+
+    @Test
+    public void whenMakeMove_hashMatchesRecompute() {
+        var random = new Random(0);
+        for (var game = 0; game < 100; game++) {
+            var board = OthelloBoard.initial();
+            Assertions.assertEquals(recomputeHash(board), board.getHashKey());
+
+            for (var moves = board.findLegalMoves(); moves != 0; moves = board.findLegalMoves()) {
+                board.makeMove(OthelloBoard.randomMove(random, moves));
+                Assertions.assertEquals(recomputeHash(board), board.getHashKey());
+
+                if (board.findLegalMoves() == 0) {
+                    board.skipTurn();
+                    Assertions.assertEquals(recomputeHash(board), board.getHashKey());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void whenCanonical_ifOpeningMoves_allEqual() {
+        var canonical = othelloBoard.makeMoved("d3").canonical();
+        for (var move : List.of("c4", "e6", "f5")) {
+            var board = othelloBoard.makeMoved(move);
+            Assertions.assertEquals(canonical, board.canonical());
+            Assertions.assertEquals(canonical.getHashKey(), board.canonical().getHashKey());
+        }
+    }
+
+    @Test
+    public void whenTransform_matchesTiles() {
+        var random = new Random(0);
+        var board = OthelloBoard.initial();
+        for (var ply = 0; ply < 30; ply++) {
+            for (var transform = 0; transform < Symmetry.COUNT; transform++) {
+                var transformed = board.transformed(transform);
+                for (var square = 0; square < 64; square++) {
+                    var tile = Tile.fromSquare(square).transformed(transform);
+                    Assertions.assertEquals(board.getSquare(square), transformed.getSquare(tile));
+                }
+
+                // moves are mapped onto the transformed board, and back with the inverse
+                Assertions.assertEquals(Symmetry.transform(board.findLegalMoves(), transform), transformed.findLegalMoves());
+                Assertions.assertEquals(board, transformed.transformed(Symmetry.inverse(transform)));
+                Assertions.assertEquals(board.canonical(), transformed.canonical());
+            }
+
+            var moves = board.findPotentialMoves();
+            if (moves.isEmpty()) {
+                break;
+            }
+            board.makeMove(moves.get(random.nextInt(moves.size())));
+        }
+    }
+
+    @Test
+    public void whenToText_success() {
+        var expected = "---------------------------OX------XO--------------------------- X";
+        Assertions.assertEquals(expected, BoardCodec.toText(othelloBoard));
+        Assertions.assertEquals(othelloBoard, BoardCodec.fromText(expected));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> BoardCodec.fromText("--- X"));
+    }
+
+    @Test
+    public void whenEncodeThenDecode_success() throws IOException {
+        var random = new Random(0);
+        var buffer = ByteBuffer.allocate(30 * (BoardCodec.BINARY_SIZE + BoardCodec.TEXT_SIZE));
+        var bytes = new ByteArrayOutputStream();
+        var output = new DataOutputStream(bytes);
+
+        List<OthelloBoard> boards = new ArrayList<>();
+        var board = OthelloBoard.initial();
+        for (var ply = 0; ply < 30; ply++) {
+            boards.add(OthelloBoard.from(board));
+            BoardCodec.write(board, buffer);
+            BoardCodec.writeText(board, buffer);
+            BoardCodec.write(board, output);
+
+            var moves = board.findPotentialMoves();
+            board.makeMove(moves.get(random.nextInt(moves.size())));
+        }
+        Assertions.assertEquals(30 * BoardCodec.BINARY_SIZE, bytes.size());
+
+        buffer.flip();
+        var input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        for (var expected : boards) {
+            var decoded = BoardCodec.read(buffer);
+            Assertions.assertEquals(expected, decoded);
+            Assertions.assertEquals(expected.getHashKey(), decoded.getHashKey());
+            Assertions.assertEquals(expected, BoardCodec.readText(buffer));
+            Assertions.assertEquals(expected, BoardCodec.read(input));
+        }
     }
 }
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package engine;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+public class TestPatternEvaluator {
+
+    private static PatternEvaluator randomEvaluator(Random random) {
+        var weights = new float[PatternEvaluator.PHASES][PatternEvaluator.TABLE_SIZE];
+        for (var table : weights) {
+            for (var i = 0; i < table.length; i++) {
+                table[i] = (float) random.nextGaussian();
+            }
+            PatternEvaluator.symmetrize(table);
+        }
+        return PatternTrainer.toEvaluator(weights);
+    }
+
+    @Test
+    public void whenSquares_ifIdentity_matchesPatternShape() {
+        Assertions.assertArrayEquals(new int[]{0, 1, 2, 3, 4, 5, 6, 7, 9, 14},
+            PatternEvaluator.squares(PatternEvaluator.EDGE_2X, Symmetry.IDENTITY));
+        Assertions.assertArrayEquals(new int[]{0, 1, 2, 8, 9, 10, 16, 17, 18},
+            PatternEvaluator.squares(PatternEvaluator.CORNER_3X3, Symmetry.IDENTITY));
+        Assertions.assertArrayEquals(new int[]{0, 1, 2, 3, 4, 8, 9, 10, 11, 12},
+            PatternEvaluator.squares(PatternEvaluator.CORNER_2X5, Symmetry.IDENTITY));
+        Assertions.assertArrayEquals(new int[]{2, 11, 20, 29, 38, 47},
+            PatternEvaluator.squares(PatternEvaluator.DIAG_6, Symmetry.IDENTITY));
+        // 4 edges, 4 corners of each block, 8 corner rectangles, 4 of each row, 2 long and 4 of each short diagonal
+        Assertions.assertEquals(46, PatternEvaluator.INSTANCE_COUNT);
+    }
+
+    @Test
+    public void whenEvaluate_ifSymmetricBoards_sameScore() {
+        var random = new Random(5);
+        var evaluator = randomEvaluator(random);
+        for (var i = 0; i < 20; i++) {
+            var board = RandomPositions.randomPosition(random, 10 + i * 2);
+            var black = board.getDiscs(OthelloBoard.BLACK);
+            var white = board.getDiscs(OthelloBoard.WHITE);
+            var expected = evaluator.evaluate(board);
+            for (var t = 0; t < Symmetry.COUNT; t++) {
+                var transformed = OthelloBoard.of(Symmetry.transform(black, t), Symmetry.transform(white, t),
+                    board.isBlackMove());
+                Assertions.assertEquals(expected, evaluator.evaluate(transformed), BoardCodec.toText(board));
+            }
+        }
+    }
+
+    @Test
+    public void whenAccumulate_ifMovesMadeAndUnmade_sameScoreAsEvaluate() {
+        var random = new Random(7);
+        EvaluatorChecks.assertAccumulatorMatchesEvaluate(randomEvaluator(random), random, 10);
+    }
+
+    @Test
+    public void whenWriteThenRead_sameScores() throws IOException {
+        var random = new Random(9);
+        var evaluator = randomEvaluator(random);
+        EvaluatorChecks.assertWriteThenReadSameScores(evaluator, evaluator::write, PatternEvaluator::read, random);
+    }
+}
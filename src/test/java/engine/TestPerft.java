@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package engine;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+public class TestPerft {
+
+    @Test
+    public void whenPerft_matchesKnownCounts() {
+        var board = OthelloBoard.initial();
+        for (var depth = 0; depth <= 9; depth++) {
+            Assertions.assertEquals(Perft.KNOWN_COUNTS[depth], Perft.perft(board, depth));
+        }
+        // the board is searched in place and should be restored
+        Assertions.assertEquals(OthelloBoard.initial(), board);
+    }
+
+    @Test
+    public void whenParallelPerft_matchesKnownCounts() {
+        var pool = new ForkJoinPool(2);
+        try {
+            var board = OthelloBoard.initial();
+            for (var depth = 7; depth <= 10; depth++) {
+                Assertions.assertEquals(Perft.KNOWN_COUNTS[depth], Perft.parallelPerft(pool, board, depth));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package engine;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestScore {
+
+    @Test
+    public void whenExact_ranksBeyondHeuristics_displaysAsBefore() {
+        Assertions.assertTrue(Score.exact(1) > Score.MAX_HEURISTIC);
+        Assertions.assertTrue(Score.exact(-1) < -Score.MAX_HEURISTIC);
+        Assertions.assertTrue(Score.exact(64) < Score.INF);
+        Assertions.assertTrue(Score.isExact(Score.exact(-3)));
+        Assertions.assertFalse(Score.isExact(Score.clamp(Integer.MAX_VALUE)));
+
+        Assertions.assertEquals(1012f, Score.toFloat(Score.exact(12)));
+        Assertions.assertEquals(-1005f, Score.toFloat(Score.exact(-5)));
+        Assertions.assertEquals(0f, Score.toFloat(Score.exact(0)));
+        Assertions.assertEquals(-12.5f, Score.toFloat(-12 * Score.SCALE - Score.SCALE / 2));
+    }
+}
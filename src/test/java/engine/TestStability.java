@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package engine;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class TestStability {
+
+    // the squares whose disc changes color in any way the game can continue
+    private static long findFlippable(OthelloBoard board) {
+        var moves = board.findLegalMoves();
+        if (moves == 0) {
+            var skipped = board.skippedTurn();
+            return skipped.findLegalMoves() == 0 ? 0 : findFlippable(skipped);
+        }
+        var flippable = 0L;
+        for (; moves != 0; moves = OthelloBoard.removeFirstMove(moves)) {
+            var child = OthelloBoard.from(board);
+            flippable |= child.makeMove(OthelloBoard.firstMove(moves));
+            flippable |= findFlippable(child);
+        }
+        return flippable;
+    }
+
+    @Test
+    public void whenFindStable_ifRandomPositions_neverFlipped() {
+        var random = new Random(3);
+        for (var i = 0; i < 30; i++) {
+            var board = RandomPositions.randomPosition(random, 4 + i % 6);
+            var flippable = findFlippable(board);
+
+            Assertions.assertEquals(0, Stability.findStable(board, OthelloBoard.BLACK) & flippable, BoardCodec.toText(board));
+            Assertions.assertEquals(0, Stability.findStable(board, OthelloBoard.WHITE) & flippable, BoardCodec.toText(board));
+        }
+    }
+
+    @Test
+    public void whenFindStable_ifKnownBoards_success() {
+        Assertions.assertEquals(0, Stability.findStable(OthelloBoard.initial(), OthelloBoard.BLACK));
+
+        // a full board is stable everywhere
+        var black = 0x00ff00ff00ff00ffL;
+        Assertions.assertEquals(black, Stability.findStable(black, ~black));
+        Assertions.assertEquals(~black, Stability.findStable(~black, black));
+
+        // a corner holds its edge neighbours of the same color, but not the disc diagonal to it, which can still
+        // be outflanked on its other diagonal
+        Assertions.assertEquals(0x0000000000000103L, Stability.findStable(0x0000000000000303L, 0x0000000000000404L));
+        // a disc between an opponent's disc and an empty square on the edge is not
+        Assertions.assertEquals(0, Stability.findStable(0x2L, 0x4L));
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package engine;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestTTable {
+
+    @Test
+    public void whenStore_ifNegativeKey_probeReturnsFields() {
+        var table = new TTable(1);
+        var key = -0x123456789ABCDEFL;
+
+        table.store(key, -Score.INF, 7, TTable.LOWER, 63);
+
+        var entry = table.probe(key);
+        Assertions.assertNotEquals(TTable.MISS, entry);
+        Assertions.assertEquals(-Score.INF, TTable.score(entry));
+        Assertions.assertEquals(7, TTable.depth(entry));
+        Assertions.assertEquals(TTable.LOWER, TTable.bound(entry));
+        Assertions.assertEquals(63, TTable.bestMove(entry));
+        Assertions.assertEquals(TTable.MISS, table.probe(key + 1));
+    }
+
+    @Test
+    public void whenStore_ifNoBestMove_keepsPreviousBestMove() {
+        var table = new TTable(1);
+
+        table.store(42L, 128, 3, TTable.EXACT, 19);
+        table.store(42L, -256, 5, TTable.UPPER, MoveOrdering.NO_MOVE);
+
+        var entry = table.probe(42L);
+        Assertions.assertEquals(-256, TTable.score(entry));
+        Assertions.assertEquals(19, TTable.bestMove(entry));
+    }
+
+    @Test
+    public void whenStore_ifSameKeyShallowerBound_keepsDeeperEntry() {
+        var table = new TTable(1);
+
+        table.store(42L, 128, 8, TTable.LOWER, 19);
+        table.store(42L, -256, 3, TTable.UPPER, 20);
+        Assertions.assertEquals(8, TTable.depth(table.probe(42L)));
+
+        // an exact score replaces it at any depth
+        table.store(42L, 64, 2, TTable.EXACT, 21);
+        Assertions.assertEquals(2, TTable.depth(table.probe(42L)));
+
+        // and so does any score once the entry is from an earlier search
+        table.store(42L, 128, 8, TTable.LOWER, 19);
+        table.startSearch();
+        table.store(42L, -256, 3, TTable.UPPER, 20);
+        Assertions.assertEquals(3, TTable.depth(table.probe(42L)));
+        Assertions.assertEquals(-256, TTable.score(table.probe(42L)));
+    }
+
+    @Test
+    public void whenStore_ifBucketFull_replacesShallowestOldestEntry() {
+        var table = new TTable(1);
+        // keys that differ only above the index bits share a bucket
+        var stride = (long) table.getCapacity() / TTable.BUCKET_SIZE;
+
+        table.store(0, 0, 1, TTable.EXACT, MoveOrdering.NO_MOVE);
+        table.startSearch();
+        for (var i = 1; i < TTable.BUCKET_SIZE; i++) {
+            table.store(i * stride, 0, 1, TTable.EXACT, MoveOrdering.NO_MOVE);
+        }
+        table.store(TTable.BUCKET_SIZE * stride, 0, 1, TTable.EXACT, MoveOrdering.NO_MOVE);
+
+        Assertions.assertEquals(TTable.MISS, table.probe(0));
+        for (var i = 1; i <= TTable.BUCKET_SIZE; i++) {
+            Assertions.assertNotEquals(TTable.MISS, table.probe(i * stride));
+        }
+    }
+
+    @Test
+    public void whenCreate_ifSizeInMb_capacityIsPowerOfTwo() {
+        var table = new TTable(3);
+
+        Assertions.assertEquals(2 << 20, table.getCapacity() * TTable.ENTRY_BYTES);
+    }
+
+    @Test
+    public void whenCreate_ifSizeTooLargeForArray_throws() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new TTable(TTable.MAX_SIZE_MB + 1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new TTable(16384));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new TTable(0));
+    }
+
+    @Test
+    public void whenStoreConcurrently_ifEntriesTorn_probeNeverReturnsOtherKeysData() throws InterruptedException {
+        var table = new TTable(1);
+        var failures = new AtomicInteger();
+        var threads = new Thread[4];
+        for (var t = 0; t < threads.length; t++) {
+            var seed = t;
+            threads[t] = new Thread(() -> {
+                var random = new Random(seed);
+                for (var i = 0; i < 200000; i++) {
+                    // the threads store and probe the same few thousand keys, the stored depth is derived from the key
+                    var key = random.nextInt(4096) * 0x9E3779B97F4A7C15L;
+                    var depth = (int) (key >>> 58);
+                    if (random.nextBoolean()) {
+                        table.store(key, 0, depth, TTable.EXACT, MoveOrdering.NO_MOVE);
+                    } else {
+                        var entry = table.probe(key);
+                        if (entry != TTable.MISS && TTable.depth(entry) != depth) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (var thread : threads) {
+            thread.join();
+        }
+
+        Assertions.assertEquals(0, failures.get());
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package engine;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+public class TestYbwcSearch {
+
+    private static OthelloBoard midgameBoard() {
+        var board = OthelloBoard.initial();
+        for (var move : new String[]{"d3", "c5", "f6", "f5", "e6", "e3", "c3", "f3", "c4", "b4"}) {
+            board.makeMove(Tile.fromNotation(move));
+        }
+        return board;
+    }
+
+    // minimax without any pruning, black maximizes, a pass does not use up depth and a finished game is exact
+    private static int minimax(OthelloBoard board, int depth) {
+        if (depth == 0) {
+            return OthelloAgent.findHeuristic(board);
+        }
+        var moves = board.findLegalMoves();
+        if (moves == 0) {
+            var skipped = board.skippedTurn();
+            return skipped.findLegalMoves() == 0 ? OthelloAgent.findFinalScore(board) : minimax(skipped, depth);
+        }
+        var best = board.isBlackMove() ? -Score.INF : Score.INF;
+        for (; moves != 0; moves = OthelloBoard.removeFirstMove(moves)) {
+            var heuristic = minimax(board.makeMoved(OthelloBoard.firstMove(moves)), depth - 1);
+            best = board.isBlackMove() ? Math.max(best, heuristic) : Math.min(best, heuristic);
+        }
+        return best;
+    }
+
+    @Test
+    public void whenSearch_ifDifferentThreads_sameScoreAndNodes() {
+        var board = midgameBoard();
+        var serialPool = new ForkJoinPool(1);
+        var parallelPool = new ForkJoinPool(4);
+        try {
+            var expected = new YbwcSearch(serialPool).search(board, 7);
+            for (var i = 0; i < 3; i++) {
+                var result = new YbwcSearch(parallelPool).search(board, 7);
+                Assertions.assertEquals(expected.heuristic(), result.heuristic());
+                Assertions.assertEquals(expected.nodes(), result.nodes());
+                Assertions.assertEquals(expected.bestMove(), result.bestMove());
+            }
+        } finally {
+            serialPool.shutdown();
+            parallelPool.shutdown();
+        }
+    }
+
+    @Test
+    public void whenSearch_ifMoveEndsGame_exactScore() {
+        // black takes both white discs at e2 and wins 5-0
+        var black = (1L << Tile.fromNotation("b2").square()) | (1L << Tile.fromNotation("d1").square());
+        var white = (1L << Tile.fromNotation("c2").square()) | (1L << Tile.fromNotation("d2").square());
+        var board = OthelloBoard.of(black, white, true);
+        var pool = new ForkJoinPool(2);
+        try {
+            var result = new YbwcSearch(pool).search(board, 4);
+
+            Assertions.assertEquals(Score.exact(5), result.heuristic());
+            Assertions.assertEquals(Tile.fromNotation("e2").square(), result.bestMove());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void whenSearch_ifRootPasses_noBestMove() {
+        // the white discs fill the a file, so black cannot flank any of them and has to pass, white can take b2
+        var black = (1L << Tile.fromNotation("a1").square()) | (1L << Tile.fromNotation("b2").square());
+        var white = 0L;
+        for (var row = 2; row <= 8; row++) {
+            white |= 1L << Tile.fromNotation("a" + row).square();
+        }
+        var board = OthelloBoard.of(black, white, true);
+        var pool = new ForkJoinPool(2);
+        try {
+            for (var depth : new int[]{2, 6}) {
+                var result = new YbwcSearch(pool).search(board, depth);
+
+                Assertions.assertEquals(-1, result.bestMove());
+                Assertions.assertEquals(minimax(board, depth), result.heuristic());
+            }
+            Assertions.assertEquals(OthelloBoard.of(black, white, true), board);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void whenSearch_ifFullWindow_matchesMinimax() {
+        var board = midgameBoard();
+        var pool = new ForkJoinPool(4);
+        try {
+            var result = new YbwcSearch(pool).search(board, 5);
+
+            Assertions.assertEquals(minimax(board, 5), result.heuristic());
+            Assertions.assertEquals(result.heuristic(), minimax(board.makeMoved(result.bestMove()), 4));
+            Assertions.assertEquals(midgameBoard(), board);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) Joseph Prichard 2024.
+ */
+
+package services;
+
+import engine.OthelloBoard;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.*;
+
+public class TestAgentDispatcher {
+
+    private static ThreadPoolExecutor createExecutor() {
+        return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+    }
+
+    private static void awaitAgentsHeld(AgentDispatcher dispatcher) throws TimeoutException {
+        awaitFreeAgents(dispatcher, 0);
+    }
+
+    // waits until the searches and ponders have taken agents until only the free agents are left, which they only
+    // do once they have started
+    private static void awaitFreeAgents(AgentDispatcher dispatcher, int freeAgents) throws TimeoutException {
+        var waitUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (dispatcher.getFreeAgents() > freeAgents) {
+            if (System.nanoTime() > waitUntil) {
+                throw new TimeoutException("No search took an agent");
+            }
+            Thread.yield();
+        }
+    }
+
+    @Test
+    public void whenCancel_ifSearchRunning_completesAndReturnsAgent() throws Exception {
+        var executor = createExecutor();
+        var helperExecutor = Executors.newCachedThreadPool();
+        try {
+            var dispatcher = new AgentDispatcher(executor, helperExecutor, helperExecutor, 1);
+
+            // a deep search of the opening takes far longer than the test waits
+            var future = dispatcher.findMove("game", OthelloBoard.initial(), 30);
+            awaitAgentsHeld(dispatcher);
+            dispatcher.cancel("game");
+
+            Assertions.assertThrows(CancellationException.class, () -> future.get(1, TimeUnit.SECONDS));
+
+            // the agent is back in the queue, and the interrupt did not leak into the next search
+            var next = dispatcher.findMove("other", OthelloBoard.initial(), 3);
+            Assertions.assertNotNull(next.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+            helperExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void whenCancel_ifSearchQueued_otherKeysUnaffected() throws Exception {
+        var executor = createExecutor();
+        var helperExecutor = Executors.newCachedThreadPool();
+        try {
+            var dispatcher = new AgentDispatcher(executor, helperExecutor, helperExecutor, 1);
+
+            // the single pool thread is busy, so the second search waits in the queue when it is cancelled
+            var running = dispatcher.findMove("first", OthelloBoard.initial(), 5);
+            var queued = dispatcher.findMove("second", OthelloBoard.initial(), 5);
+            dispatcher.cancel("second");
+
+            Assertions.assertNotNull(running.get(5, TimeUnit.SECONDS));
+            Assertions.assertTrue(queued.isCancelled());
+            Assertions.assertThrows(CancellationException.class, queued::get);
+        } finally {
+            executor.shutdownNow();
+            helperExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void whenFindMove_ifPonderedReply_returnsImmediately() throws Exception {
+        var executor = createExecutor();
+        var helperExecutor = Executors.newCachedThreadPool();
+        try {
+            var dispatcher = new AgentDispatcher(executor, helperExecutor, helperExecutor, 1);
+
+            var board = OthelloBoard.initial().makeMoved("d3");
+            dispatcher.ponder("game", board, 5).get(30, TimeUnit.SECONDS);
+
+            var replyBoard = board.makeMoved("c3");
+            var future = dispatcher.findMove("game", replyBoard, 5);
+
+            Assertions.assertTrue(future.isDone());
+            var expected = dispatcher.findMove("other", replyBoard, 5).get(30, TimeUnit.SECONDS);
+            Assertions.assertEquals(expected.tile(), future.get().tile());
+        } finally {
+            executor.shutdownNow();
+            helperExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void whenFindMove_ifPondering_preemptsPonder() throws Exception {
+        var executor = createExecutor();
+        var helperExecutor = Executors.newCachedThreadPool();
+        try {
+            var dispatcher = new AgentDispatcher(executor, helperExecutor, helperExecutor, 1);
+
+            // the ponder holds the only agent, so the search has to take it back
+            var ponder = dispatcher.ponder("game", OthelloBoard.initial(), 30);
+            awaitAgentsHeld(dispatcher);
+            var future = dispatcher.findMove("other", OthelloBoard.initial(), 3);
+
+            Assertions.assertNotNull(future.get(5, TimeUnit.SECONDS));
+            Assertions.assertTrue(ponder.isCancelled());
+        } finally {
+            executor.shutdownNow();
+            helperExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void whenFindMove_ifPonderingSameKey_takesPonderAgent() throws Exception {
+        var executor = createExecutor();
+        var helperExecutor = Executors.newCachedThreadPool();
+        try {
+            var dispatcher = new AgentDispatcher(executor, helperExecutor, helperExecutor, 1);
+
+            // the search waits for the ponder to give back the agent that holds the game's table
+            dispatcher.ponder("game", OthelloBoard.initial(), 30);
+            awaitAgentsHeld(dispatcher);
+            var future = dispatcher.findMove("game", OthelloBoard.initial(), 3);
+
+            Assertions.assertNotNull(future.get(5, TimeUnit.SECONDS));
+            Assertions.assertEquals(1, dispatcher.getAffinityHits());
+            Assertions.assertEquals(1, dispatcher.getFreeAgents());
+        } finally {
+            executor.shutdownNow();
+            helperExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void whenPonder_ifSearchRunning_cancelled() throws Exception {
+        var executor = new ThreadPoolExecutor(2, 2, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        var helperExecutor = Executors.newCachedThreadPool();
+        try {
+            var dispatcher = new AgentDispatcher(executor, helperExecutor, helperExecutor, 1);
+
+            // an agent is free, but the search needs the cores the ponder would take
+            var search = dispatcher.findMove("game", OthelloBoard.initial(), 30);
+            awaitFreeAgents(dispatcher, 1);
+            var ponder = dispatcher.ponder("other", OthelloBoard.initial(), 5);
+
+            Assertions.assertThrows(CancellationException.class, () -> ponder.get(5, TimeUnit.SECONDS));
+            Assertions.assertEquals(1, dispatcher.getFreeAgents());
+            dispatcher.cancel("game");
+            Assertions.assertThrows(CancellationException.class, () -> search.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+            helperExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void whenFindMove_ifSameKey_sameAgent() throws Exception {
+        var executor = new ThreadPoolExecutor(2, 2, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        var helperExecutor = Executors.newCachedThreadPool();
+        try {
+            var dispatcher = new AgentDispatcher(executor, helperExecutor, helperExecutor, 1);
+
+            // the queue hands out the agents in turn, so without affinity a key searched twice in a row would get
+            // the other agent the second time
+            var board = OthelloBoard.initial();
+            for (var key : new String[]{"first", "first", "second", "second", "first", "second"}) {
+                dispatcher.findMove(key, board, 3).get(5, TimeUnit.SECONDS);
+            }
+
+            Assertions.assertEquals(4, dispatcher.getAffinityHits());
+        } finally {
+            executor.shutdownNow();
+            helperExecutor.shutdownNow();
+        }
+    }
+}